@@ -0,0 +1,127 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the results of two JMH runs, which were saved with
+ * {@code -rf csv -rff file}. For every benchmark and parameter combination in
+ * both runs it prints how the time per operation and the bytes allocated per
+ * operation changed.
+ *
+ * @author Lucas Schlierf
+ */
+public class Baseline {
+
+    /**
+     * This class only has static Methods, so it shouldn't be instanciated.
+     */
+    private Baseline() {
+    }
+
+    /**
+     * Loads the scores of a JMH run saved as CSV. The secondary results of the gc
+     * profiler are kept as their own benchmarks, except for the allocation per
+     * operation, which is the only one that doesn't depend on the run time.
+     *
+     * @param file the file
+     * @return the scores, by benchmark name and parameters
+     * @throws IOException if the file can't be read
+     */
+    static Map<String, Double> load(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        Map<String, Double> scores = new LinkedHashMap<>();
+        if (lines.isEmpty())
+            return scores;
+        List<String> header = split(lines.get(0));
+        int score = header.indexOf("Score");
+        int unit = header.indexOf("Unit");
+        if (score < 0 || unit < 0)
+            throw new IOException(file + " is no JMH result in CSV");
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> values = split(line);
+            if (values.size() != header.size())
+                continue;
+            String name = values.get(0);
+            if (name.contains(":") && !name.endsWith(":gc.alloc.rate.norm"))
+                continue;
+            StringBuilder key = new StringBuilder(name.substring(name.lastIndexOf('.', name.indexOf(':') < 0
+                    ? name.length() : name.indexOf(':')) + 1));
+            for (int i = unit + 1; i < header.size(); i++) {
+                if (!values.get(i).isEmpty())
+                    key.append(' ').append(header.get(i).replace("Param: ", "")).append('=').append(values.get(i));
+            }
+            try {
+                scores.put(key.toString(), Double.parseDouble(values.get(score)));
+            } catch (NumberFormatException e) {
+                throw new IOException(file + " is damaged", e);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Splits a line of CSV, removing the quotes around the values.
+     */
+    private static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"')
+                quoted = !quoted;
+            else if (c == ',' && !quoted) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else
+                value.append(c);
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Prints how the scores changed against the baseline, for all benchmarks
+     * contained in both.
+     *
+     * @param results  the new scores
+     * @param baseline the scores to compare against
+     */
+    public static void compare(Map<String, Double> results, Map<String, Double> baseline) {
+        System.out.println(String.format(Locale.ROOT, "%-60s %14s %14s %9s", "Benchmark", "baseline", "result",
+                "change"));
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            Double before = baseline.get(result.getKey());
+            if (before == null)
+                continue;
+            double after = result.getValue();
+            System.out.println(String.format(Locale.ROOT, "%-60s %14.1f %14.1f %+8.1f%%", result.getKey(), before,
+                    after, before == 0 ? 0 : (after - before) * 100 / before));
+        }
+    }
+
+    /**
+     * Compares two JMH runs given as the arguments "(the baseline CSV) (the new
+     * CSV)".
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: (baseline.csv) (results.csv)");
+            return;
+        }
+        try {
+            compare(load(Paths.get(args[1])), load(Paths.get(args[0])));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import BingoParts.BingoCard;
+import BingoParts.CardGenerator;
+import BingoParts.Printing;
+
+/**
+ * Measures creating BingoCards, checking them for a Bingo, formatting them for
+ * the console and printing them to PDF, for every combination of card size and
+ * set size. The card that is checked and printed has about half of its fields
+ * marked off.
+ *
+ * @author Lucas Schlierf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CardBenchmarks extends TemporarySet {
+
+    @Param({ "3", "5", "7" })
+    public int size;
+
+    @Param({ "50", "500", "5000" })
+    public int setSize;
+
+    private CardGenerator generator;
+    private long id;
+    private BingoCard card;
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        createSet(setSize);
+        generator = CardGenerator.forSet(SET_NAME, size, true);
+        id = generator.idOf(12345);
+        card = BingoCard.createFromSet(SET_NAME, size, true);
+        Random random = new Random(size);
+        for (int i = 0; i < size * size / 2; i++) {
+            card.markOffTile(random.nextInt(size), random.nextInt(size));
+        }
+        output = Files.createTempDirectory("BingoBenchmarks");
+    }
+
+    /**
+     * Deletes the PDFs printed in the last iteration, so the printing benchmarks
+     * don't fill the disk.
+     */
+    @TearDown(Level.Iteration)
+    public void deletePrints() throws IOException {
+        clean(output);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        clean(output);
+        Files.delete(output);
+        deleteSet();
+    }
+
+    @Benchmark
+    public BingoCard createFromSet() throws IOException {
+        return BingoCard.createFromSet(SET_NAME, size, true);
+    }
+
+    @Benchmark
+    public BingoCard regenerate() {
+        return generator.regenerate(42, id);
+    }
+
+    @Benchmark
+    public boolean isCompleted() {
+        return card.isCompleted();
+    }
+
+    @Benchmark
+    public int numMarkedOff() {
+        return card.numMarkedOff();
+    }
+
+    @Benchmark
+    public String toConsoleOutput() {
+        return Printing.toConsoleOutput(card);
+    }
+
+    @Benchmark
+    public void printToPDF() throws IOException {
+        Printing.printToPDF(card, SET_NAME, output.toString());
+    }
+
+    @Benchmark
+    public void printSix() throws IOException {
+        Printing.printSix(SET_NAME, size, true, output.toString());
+    }
+}
@@ -0,0 +1,78 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import BingoParts.PrintReport;
+import BingoParts.Printing;
+
+/**
+ * Measures how bulk printing scales with the number of threads. Every operation
+ * prints {@code count} BingoCards of size 5, six per page, into one merged PDF
+ * with {@code printParallel()}, so the pages per second are
+ * {@code count / 6 * 1000} divided by the time per operation. The scaling is
+ * only meaningful for up to as many threads as there are cores. The
+ * allocation reported by {@code -prof gc} only counts the benchmark thread, so
+ * it covers merging the shards, but not rendering them.
+ *
+ * @author Lucas Schlierf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrintBenchmarks extends TemporarySet {
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    @Param({ "600" })
+    public int count;
+
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        createSet(500);
+        output = Files.createTempDirectory("BingoBenchmarks");
+    }
+
+    /**
+     * Deletes the PDFs printed in the last iteration, so the benchmark doesn't
+     * fill the disk.
+     */
+    @TearDown(Level.Iteration)
+    public void deletePrints() throws IOException {
+        clean(output);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        clean(output);
+        Files.delete(output);
+        deleteSet();
+    }
+
+    @Benchmark
+    public PrintReport printParallel() throws IOException {
+        return Printing.printParallel(SET_NAME, 5, count, true, output.toString(), threads, true);
+    }
+}
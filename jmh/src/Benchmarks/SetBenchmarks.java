@@ -0,0 +1,58 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import BingoParts.BingoSets;
+
+/**
+ * Measures fetching BingoSets from storage, for every set size.
+ *
+ * @author Lucas Schlierf
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SetBenchmarks extends TemporarySet {
+
+    @Param({ "50", "500", "5000" })
+    public int setSize;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        createSet(setSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        deleteSet();
+    }
+
+    @Benchmark
+    public List<String> getSet() throws IOException {
+        return BingoSets.getSet(SET_NAME);
+    }
+
+    @Benchmark
+    public List<String> getAllNames() {
+        return BingoSets.getAllNames();
+    }
+}
@@ -0,0 +1,78 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import BingoParts.BingoSets;
+
+/**
+ * The base of all benchmarks that need a BingoSet. The BingoSet is created with
+ * generated entries in a temporary directory, which replaces the BingoSets
+ * directory for the whole JVM, so the benchmarks never create or delete
+ * anything in the real BingoSets directory, even if a run is aborted.
+ *
+ * @author Lucas Schlierf
+ */
+public abstract class TemporarySet {
+
+    /**
+     * The name of the BingoSet the benchmarks use.
+     */
+    static final String SET_NAME = "benchmark";
+
+    private static Path directory;
+
+    /**
+     * Creates the BingoSet, replacing the one of an earlier trial in the same
+     * JVM.
+     *
+     * @param setSize the number of entries
+     * @throws IOException if the BingoSet can't be created
+     */
+    protected void createSet(int setSize) throws IOException {
+        useTemporaryDirectory();
+        BingoSets.deleteSet(SET_NAME);
+        String[] texts = new String[setSize];
+        for (int i = 0; i < setSize; i++) {
+            texts[i] = "Entry " + (i + 1);
+        }
+        BingoSets.createSet(SET_NAME, texts);
+    }
+
+    /**
+     * Deletes the BingoSet.
+     *
+     * @throws IOException if the BingoSet can't be deleted
+     */
+    protected void deleteSet() throws IOException {
+        BingoSets.deleteSet(SET_NAME);
+    }
+
+    /**
+     * Points the BingoSets to a new temporary directory, which is deleted when
+     * the JVM exits. This happens only once per JVM, since the directory can't
+     * be changed after the first BingoSet is accessed.
+     */
+    private static synchronized void useTemporaryDirectory() throws IOException {
+        if (directory != null)
+            return;
+        directory = Files.createTempDirectory("BingoSets");
+        directory.toFile().deleteOnExit();
+        System.setProperty(BingoSets.DIRECTORY_PROPERTY, directory.toString());
+    }
+
+    /**
+     * Deletes all files in a directory.
+     *
+     * @param directory the directory
+     * @throws IOException if a file can't be deleted
+     */
+    static void clean(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package BingoParts;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws indexes with probabilities proportional to their weights in constant
+ * time, using Vose's alias method. Every index gets a column holding its own
+ * probability and an alias that fills up the rest of the column, so a draw is
+ * one random column and one random comparison.
+ *
+ * @author Lucas Schlierf
+ */
+final class AliasTable {
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * Builds the table in linear time.
+     *
+     * @param weights the weights, none negative and at least one positive
+     * @throws IllegalArgumentException if no weight is positive
+     */
+    AliasTable(double[] weights) {
+        int n = weights.length;
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        if (!(total > 0))
+            throw new IllegalArgumentException("At least one weight has to be positive");
+        this.probability = new double[n];
+        this.alias = new int[n];
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1)
+                small[smallCount++] = i;
+            else
+                large[largeCount++] = i;
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1)
+                small[smallCount++] = more;
+            else
+                large[largeCount++] = more;
+        }
+        // what is left is 1 up to rounding errors
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1;
+        }
+    }
+
+    /**
+     * Draws an index.
+     *
+     * @param random the source of randomness
+     * @return the index
+     */
+    int sample(SplittableRandom random) {
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+
+    int size() {
+        return probability.length;
+    }
+}
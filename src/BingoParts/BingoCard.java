@@ -1,29 +1,44 @@
 package BingoParts;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-import java.util.Random;
+import java.nio.file.Path;
 
 /**
  * This represents a playing card with a field of BingoTiles that can be marked
- * off.
+ * off. Internally, a BingoCard only stores the TermDictionary ids of its texts
+ * and a bitmask of the marked positions; BingoTiles are created as views on
+ * demand.
  * 
  * @author Lucas Schlierf
  */
 public class BingoCard {
-    private BingoTile[][] tiles;
+    static final int FREE = -1;
+
+    private final TermDictionary dictionary;
+    private final int[] terms;
+    private final LineMasks lines;
+    private final long[] marks;
+    private long id;
 
     /**
-     * Creates a new BingoCard form the BinogTile array. Constructor is set to
-     * private to insure only square BingoCards are created, use static methods to
-     * obtain BingoCards.
+     * Creates a new BingoCard from the term ids. Constructor is set to private to
+     * insure only square BingoCards are created, use static methods to obtain
+     * BingoCards.
      * 
-     * @param tiles the BingoTiles you want this BingoCard to hold
+     * @param dictionary the TermDictionary the term ids refer to
+     * @param size       the size of the BingoCard
+     * @param terms      the term ids, row by row, with {@code FREE} for free
+     *                   positions
      */
-    private BingoCard(BingoTile[][] tiles) {
-        this.tiles = tiles;
+    BingoCard(TermDictionary dictionary, int size, int[] terms) {
+        this.dictionary = dictionary;
+        this.terms = terms;
+        this.lines = LineMasks.forSize(size);
+        this.marks = new long[lines.getWords()];
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i] == FREE)
+                LineMasks.set(marks, i);
+        }
     }
 
     /**
@@ -32,38 +47,51 @@ public class BingoCard {
      */
     public void addFreeTile() {
         if (getSize() % 2 == 1)
-            tiles[tiles.length / 2][tiles[0].length / 2] = new FreeBingoTile();
+            setField(getSize() / 2, getSize() / 2, new FreeBingoTile());
     }
 
     /**
-     * Returns the specified BingoTile.
+     * Returns a view of the specified BingoTile.
      * 
      * @param x the x coordinate, from 0 (inclusive), to size (exclusive).
      * @param y the y coordinate, from 0 (inclusive), to size (exclusive).
      * @return the specified BingoTile
      */
     public BingoTile getTile(int x, int y) {
-        return tiles[y][x];
+        int index = indexOf(x, y);
+        return terms[index] == FREE ? new FreeBingoTile(this, index) : new BingoTile(this, index);
     }
 
     /**
-     * Gets the whole BingoTile array.
+     * Gets views of all BingoTiles.
      * 
      * @return the BingoTile array
      */
     protected BingoTile[][] getTiles() {
+        BingoTile[][] tiles = new BingoTile[getSize()][getSize()];
+        for (int y = 0; y < tiles.length; y++) {
+            for (int x = 0; x < tiles.length; x++) {
+                tiles[y][x] = getTile(x, y);
+            }
+        }
         return tiles;
     }
 
     /**
-     * Replaces a BingoTile with the specified one.
+     * Replaces a BingoTile with the specified one. The BingoTile becomes a view of
+     * its position on this BingoCard.
      * 
      * @param x     the x coordinate, from 0 (inclusive), to size (exclusive).
      * @param y     the y coordinate, from 0 (inclusive), to size (exclusive).
      * @param field the BingoTile you want to place
      */
     public void setField(int x, int y, BingoTile field) {
-        tiles[y][x] = field;
+        int index = indexOf(x, y);
+        boolean markedOff = field.isMarkedOff();
+        terms[index] = field instanceof FreeBingoTile ? FREE : dictionary.intern(field.getText());
+        LineMasks.clear(marks, index);
+        updateMark(index, markedOff);
+        field.attach(this, index);
     }
 
     /**
@@ -71,9 +99,118 @@ public class BingoCard {
      * 
      * @param x the x coordinate, from 0 (inclusive), to size (exclusive).
      * @param y the y coordinate, from 0 (inclusive), to size (exclusive).
+     * @return {@code true} if a line running through this BingoTile is now
+     *         completely marked off, {@code false} otherwise
+     */
+    public boolean markOffTile(int x, int y) {
+        return markOff(indexOf(x, y));
+    }
+
+    /**
+     * Marks off the specified position.
+     * 
+     * @param index the index of the position ({@code y * size + x})
+     * @return {@code true} if a line running through this position is now
+     *         completely marked off, {@code false} otherwise
+     */
+    boolean markOff(int index) {
+        LineMasks.set(marks, index);
+        return lines.anyLineCompleteThrough(marks, index);
+    }
+
+    /**
+     * Sets the marked state of a position. Free positions always stay marked off.
+     * 
+     * @param index     the index of the position ({@code y * size + x})
+     * @param markedOff whether the position is marked off
+     */
+    void updateMark(int index, boolean markedOff) {
+        if (markedOff || terms[index] == FREE)
+            LineMasks.set(marks, index);
+        else
+            LineMasks.clear(marks, index);
+    }
+
+    /**
+     * Returns a copy of the marks, one bit per position.
+     * 
+     * @return the marks
      */
-    public void markOffTile(int x, int y) {
-        tiles[y][x].setMarkedOff(true);
+    long[] getMarks() {
+        return marks.clone();
+    }
+
+    /**
+     * Replaces the marks, e.g. when restoring a BingoCard from a snapshot. Free
+     * positions stay marked off.
+     * 
+     * @param marks the marks, one bit per position
+     */
+    void setMarks(long[] marks) {
+        System.arraycopy(marks, 0, this.marks, 0, this.marks.length);
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i] == FREE)
+                LineMasks.set(this.marks, i);
+        }
+    }
+
+    /**
+     * Evaluates whether the specified position is marked off.
+     * 
+     * @param index the index of the position ({@code y * size + x})
+     * @return {@code true} if the position is marked off
+     */
+    boolean isMarked(int index) {
+        return LineMasks.get(marks, index);
+    }
+
+    /**
+     * Returns the text of the specified position.
+     * 
+     * @param index the index of the position ({@code y * size + x})
+     * @return the text
+     */
+    String getText(int index) {
+        return terms[index] == FREE ? FreeBingoTile.TEXT : dictionary.get(terms[index]);
+    }
+
+    /**
+     * Returns the term id of the specified position.
+     * 
+     * @param index the index of the position ({@code y * size + x})
+     * @return the term id, or {@code FREE} for a free position
+     */
+    int getTerm(int index) {
+        return terms[index];
+    }
+
+    /**
+     * Returns the id this BingoCard can be created again from, see
+     * {@code CardGenerator.card()}.
+     * 
+     * @return the id, or 0 if this BingoCard was drawn at random
+     */
+    public long getId() {
+        return id;
+    }
+
+    void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the TermDictionary the term ids of this BingoCard refer to.
+     * 
+     * @return the TermDictionary
+     */
+    TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    private int indexOf(int x, int y) {
+        if (x < 0 || y < 0 || x >= getSize() || y >= getSize())
+            throw new ArrayIndexOutOfBoundsException("(" + x + ", " + y + ") is not on this BingoCard");
+        return y * getSize() + x;
     }
 
     /**
@@ -82,7 +219,7 @@ public class BingoCard {
      * @return the size
      */
     public int getSize() {
-        return tiles.length;
+        return lines.getSize();
     }
 
     /**
@@ -93,25 +230,7 @@ public class BingoCard {
      *         otherwise
      */
     public boolean isCompleted() {
-        boolean horizontal = true;
-        boolean vertical = true;
-        boolean diagonalA = true;
-        boolean diagonalB = true;
-        for (int i = 0; i < tiles.length; i++) {
-            for (int j = 0; j < tiles[0].length; j++) {
-                if (!(vertical || horizontal))
-                    break;
-                horizontal &= tiles[i][j].isMarkedOff();
-                vertical &= tiles[j][i].isMarkedOff();
-            }
-            if (vertical || horizontal)
-                return true;
-            vertical = true;
-            horizontal = true;
-            diagonalA &= tiles[i][i].isMarkedOff();
-            diagonalB &= tiles[i][tiles.length - i - 1].isMarkedOff();
-        }
-        return diagonalA || diagonalB;
+        return lines.anyLineComplete(marks);
     }
 
     /**
@@ -121,11 +240,8 @@ public class BingoCard {
      */
     public int numMarkedOff() {
         int result = 0;
-        for (BingoTile[] a : tiles) {
-            for (BingoTile t : a) {
-                if (t.isMarkedOff())
-                    result++;
-            }
+        for (long word : marks) {
+            result += Long.bitCount(word);
         }
         return result;
     }
@@ -140,13 +256,20 @@ public class BingoCard {
         if (texts == null || texts.length < 1 || texts.length != texts[0].length) {
             return null;
         }
-        return new BingoCard(
-                Arrays.stream(texts).map(a -> Arrays.stream(a).map(s -> new BingoTile(s)).toArray(BingoTile[]::new))
-                        .toArray(BingoTile[][]::new));
+        TermDictionary dictionary = new TermDictionary();
+        int[] terms = new int[texts.length * texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            for (int j = 0; j < texts.length; j++) {
+                terms[i * texts.length + j] = dictionary.intern(texts[i][j]);
+            }
+        }
+        return new BingoCard(dictionary, texts.length, terms);
     }
 
     /**
-     * Creates a new BingoCard from a BingoSet.
+     * Creates a new BingoCard from a BingoSet. Use a CardGenerator when creating
+     * several BingoCards from the same BingoSet, so the BingoSet is only fetched
+     * once.
      * 
      * @param setName     the name of the BingoSet
      * @param size        the size of the BingoCard
@@ -156,30 +279,55 @@ public class BingoCard {
      *         or the new BingoCard otherwise.
      * @throws IOException if an IOException occurs while fetching the BingoSet
      */
-    public static BingoCard createFromSet(String setName, int size, boolean addFreeTile) throws IOException { // TODO:
-                                                                                                              // hande
-                                                                                                              // free
-                                                                                                              // tile
-        addFreeTile &= (size % 2 == 1);
-        int minEntries = size * size - (addFreeTile ? 1 : 0);
-        List<String> lines = BingoSets.getSet(setName);
-        if (lines.size() < minEntries) {
+    public static BingoCard createFromSet(String setName, int size, boolean addFreeTile) throws IOException {
+        CardGenerator generator = CardGenerator.forSet(setName, size, addFreeTile);
+        return generator == null ? null : generator.next();
+    }
+
+    /**
+     * Creates a new BingoCard from the specified BingoSet without loading it.
+     * Only the drawn entries are kept while the file is read once, so this suits
+     * BingoSets too large to load, while {@code createFromSet()} is faster for
+     * creating many BingoCards from a BingoSet that fits into memory. The
+     * BingoCards are just as random as the ones {@code createFromSet()} creates.
+     * Weighted BingoSets (see WeightedSet) are loaded with
+     * {@code createFromSet()}.
+     * 
+     * @param setName     the name of the BingoSet
+     * @param size        the size of the BingoCard
+     * @param addFreeTile wether to add a free BingoTile in the middle (only works
+     *                    for odd sizes)
+     * @return {@code null} if the BingoSet doesn't exist or doesn't contain enough
+     *         entries, or the new BingoCard otherwise.
+     * @throws IOException if an IOException occurs while reading the BingoSet
+     */
+    public static BingoCard sampleFromSet(String setName, int size, boolean addFreeTile) throws IOException {
+        Path path = SetRegistry.get().getPath(setName);
+        if (path == null)
             return null;
-        }
-        Collections.shuffle(lines, new Random(System.currentTimeMillis()));
-        BingoTile[][] tiles = new BingoTile[size][size];
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (addFreeTile && i == size / 2 && j == size / 2)
-                    tiles[i][j] = new FreeBingoTile();
-                else {
-                    String text = lines.get(new Random(System.currentTimeMillis()).nextInt(lines.size()));
-                    tiles[i][j] = new BingoTile(text);
-                    lines.remove(text);
-                }
-            }
-        }
-        return new BingoCard(tiles);
+        if (SetSampler.isWeighted(path))
+            return createFromSet(setName, size, addFreeTile);
+        return SetSampler.card(path, BingoSets.getDictionary(setName), size, addFreeTile);
+    }
+
+    /**
+     * Creates the BingoCard with the specified id again, see
+     * {@code CardGenerator.card()}. To create many BingoCards from their ids, use
+     * {@code CardGenerator.regenerate()} on one CardGenerator instead, so the
+     * BingoSet isn't prepared again for every BingoCard.
+     * 
+     * @param setName    the name of the BingoSet
+     * @param masterSeed the master seed the BingoCard was created with
+     * @param id         the id of the BingoCard
+     * @return {@code null} if the BingoSet doesn't contain enough entries, or the
+     *         BingoCard otherwise
+     * @throws IOException              if an IOException occurs while fetching
+     *                                  the BingoSet
+     * @throws IllegalArgumentException if the id doesn't belong to the BingoSet
+     */
+    public static BingoCard createFromId(String setName, long masterSeed, long id) throws IOException {
+        CardGenerator generator = CardGenerator.forSet(setName, CardId.getSize(id), CardId.hasFreeTile(id));
+        return generator == null ? null : generator.regenerate(masterSeed, id);
     }
 
     /**
@@ -203,12 +351,13 @@ public class BingoCard {
 
     /**
      * Formats this BingoCard for console print, leaving out whether the BingoTiles
-     * have been marked off.
+     * have been marked off. Use {@code ConsoleRenderer.print()} to write it to a
+     * stream directly.
      * 
      * @return a nicely formatted String version of this BingoCard
      */
     public String toConsolePrint() {
-        return Printing.toConsolePrint(this);
+        return ConsoleRenderer.toString(this, false);
     }
 
     /**
@@ -218,7 +367,7 @@ public class BingoCard {
      * @return a nicely formatted String version of this BingoCard
      */
     public String toConsoleOutput() {
-        return Printing.toConsoleOutput(this);
+        return ConsoleRenderer.toString(this, true);
     }
 
 }
@@ -1,71 +1,126 @@
 package BingoParts;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 /**
  * This class handles storing and fetching BingoSets to and from storage. The
- * exact location is /bin/BingoParts/Sets/
+ * exact location is /bin/BingoParts/Sets/, unless another directory is given
+ * with the system property {@code DIRECTORY_PROPERTY}.
+ * <p>
+ * Creating and changing a BingoSet never shows a missing or partially written
+ * BingoSet to readers at the same time: the entries are written to a hidden
+ * file first, which is then moved into place atomically.
  * 
  * @author Lucas Schlierf
  */
 public class BingoSets {
 
     /**
-     * This class only has static Methods, so it shouldn't be instanciated.
+     * The system property that sets the directory the BingoSets are stored in.
+     * It has to be set before the first BingoSet is accessed.
      */
-    private BingoSets() {
-    }
+    public static final String DIRECTORY_PROPERTY = "bingo.sets";
 
     /**
-     * Fetches all paths of BingoSets in storage.
-     * 
-     * @return List of all BingoSet paths (as Strings)
+     * This class only has static Methods, so it shouldn't be instanciated.
      */
-    private static List<String> getAllPaths() {
-        return Arrays
-                .stream(new File(BingoSets.class.getClassLoader().getResource("BingoParts/Sets").getPath()).listFiles())
-                .filter(f -> !f.getName().isBlank()).map(f -> f.getAbsolutePath()).toList();
+    private BingoSets() {
     }
 
     /**
-     * Fetches all names of BingoSets in storage.
+     * Fetches all names of BingoSets in storage. The names are cached and kept up
+     * to date with changes on disk.
      * 
      * @return List of all BingoSet names
      */
     public static List<String> getAllNames() {
-        return getAllPaths().stream().map(s -> new File(s).getName().split("\\.")[0]).filter(s -> !s.isBlank())
-                .toList();
+        return SetRegistry.get().getNames();
     }
 
     /**
-     * Fetches all entries of a BingoSet.
+     * Fetches all entries of a BingoSet. Entries of recently used BingoSets are
+     * cached, the returned List is a copy that may be modified.
      * 
      * @param name the name of the BingoSet
      * @return a List of all lines in the BingoSet (as Strings)
      * @throws IOException if the path does not lead to a BingoSet
      */
     public static List<String> getSet(String name) throws IOException {
-        if (!new File(fetchPath(name)).exists()) {
-            return new ArrayList<String>();
-        }
-        List<String> lines = new ArrayList<>();
-        BufferedReader br = new BufferedReader(new FileReader(fetchPath(name), Charset.forName("UTF-8")));
-        String line = br.readLine();
-        while (line != null) {
-            lines.add(line);
-            line = br.readLine();
-        }
-        br.close();
-        return lines;
+        return new ArrayList<>(SetRegistry.get().getEntries(name));
+    }
+
+    /**
+     * Fetches all entries of a BingoSet without copying them.
+     * 
+     * @param name the name of the BingoSet
+     * @return an unmodifiable List of all lines in the BingoSet
+     * @throws IOException if the path does not lead to a BingoSet
+     */
+    static List<String> getEntries(String name) throws IOException {
+        return SetRegistry.get().getEntries(name);
+    }
+
+    /**
+     * Fetches the current version of a BingoSet. The SetVersion never changes, so
+     * everything using it keeps seeing the same entries, even if the BingoSet is
+     * changed in the meantime.
+     * 
+     * @param name the name of the BingoSet
+     * @return the SetVersion, or {@code null} if there is no such BingoSet
+     * @throws IOException if an IO exception occurs while reading the BingoSet,
+     *                     or the weights in it are invalid
+     */
+    public static SetVersion getVersion(String name) throws IOException {
+        return SetRegistry.get().getVersion(name);
+    }
+
+    /**
+     * Fetches the entries of a BingoSet together with their weights and
+     * categories, see WeightedSet for the format. Entries of plain BingoSets all
+     * have the same weight and category.
+     * 
+     * @param name the name of the BingoSet
+     * @return the WeightedSet, or {@code null} if there is no such BingoSet
+     * @throws IOException if an IO exception occurs while reading the BingoSet,
+     *                     or the weights in it are invalid
+     */
+    public static WeightedSet getWeightedSet(String name) throws IOException {
+        return SetRegistry.get().getWeightedSet(name);
+    }
+
+    /**
+     * Tries to create a new BingoSet with the specified weighted entries.
+     * 
+     * @param name the name of the BingoSet
+     * @param set  the entries with their weights and categories
+     * @return {@code true} if the BingoSet could be created, {@code false}
+     *         otherwise
+     * @throws IOException if an IO excption occurs
+     */
+    public static boolean createSet(String name, WeightedSet set) throws IOException {
+        return createSet(name, set.toLines().toArray(String[]::new));
+    }
+
+    /**
+     * Returns the TermDictionary shared by all BingoCards created from the
+     * current version of the specified BingoSet. Once the BingoSet is changed or
+     * deleted, new BingoCards get a new TermDictionary, while the old one stays
+     * with the BingoCards already using it.
+     * 
+     * @param name the name of the BingoSet
+     * @return the TermDictionary of the BingoSet, an empty one if there is no
+     *         such BingoSet
+     * @throws IOException if the attributes of the BingoSet can't be read
+     */
+    static TermDictionary getDictionary(String name) throws IOException {
+        TermDictionary dictionary = SetRegistry.get().getDictionary(name);
+        return dictionary == null ? new TermDictionary() : dictionary;
     }
 
     /**
@@ -78,18 +133,9 @@ public class BingoSets {
      * @throws IOException if an IO excption occurs
      */
     public static boolean createSet(String name, String... texts) throws IOException {
-        File directory = new File(BingoSets.class.getClassLoader().getResource("BingoParts/Sets").getPath());
-        File newSet = new File(directory, name + ".txt");
-        if (!newSet.createNewFile()) {
+        if (SetRegistry.get().getPath(name) != null)
             return false;
-        }
-        BufferedWriter bw = new BufferedWriter(new FileWriter(newSet, Charset.forName("UTF-8")));
-        for (String s : texts) {
-            bw.write(s + System.lineSeparator());
-        }
-        bw.flush();
-        bw.close();
-        return true;
+        return SetRegistry.get().publish(name, write(texts), false);
     }
 
     /**
@@ -100,12 +146,12 @@ public class BingoSets {
      *         otherwise
      */
     public static boolean deleteSet(String name) {
-        return new File(fetchPath(name)).delete();
+        return SetRegistry.get().delete(name);
     }
 
     /**
      * Throws out all entries in the specified BingoSet and enters the specified
-     * entries.
+     * entries, replacing the BingoSet in one step.
      * 
      * @param name  the name of the BingoSet
      * @param texts the entries to be placed in the BingoSet
@@ -113,29 +159,28 @@ public class BingoSets {
      * @throws IOException if an IO exception occurs
      */
     public static boolean changeSet(String name, String... texts) throws IOException {
-        if (!deleteSet(fetchPath(name)))
+        if (SetRegistry.get().getPath(name) == null)
             return false;
-        return createSet(name, texts);
+        return SetRegistry.get().publish(name, write(texts), true);
     }
 
     /**
-     * Extracts the file name from the specified path.
+     * Writes the specified entries to a new hidden file, to be published as a
+     * BingoSet.
      * 
-     * @param path the path to the file
-     * @return the file name
-     */
-    private static String getNameFromPath(String path) {
-        return new File(path).getName().split("\\.")[0];
-    }
-
-    /**
-     * Fetches the path of the specified BingoSet.
-     * 
-     * @param name the name of the BingoSet
-     * @return the path of the BingoSet if it exists, or {@code null} otherwise
+     * @param texts the entries
+     * @return the path of the file
+     * @throws IOException if an IO exception occurs
      */
-    private static String fetchPath(String name) {
-        return getAllPaths().stream().distinct().filter(p -> getNameFromPath(p).equals(name)).findFirst().orElse(null);
+    private static Path write(String... texts) throws IOException {
+        Path temp = SetRegistry.get().newTempFile();
+        try {
+            Files.write(temp, Arrays.asList(texts), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
     }
 
 }
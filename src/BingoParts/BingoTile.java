@@ -2,13 +2,17 @@ package BingoParts;
 
 /**
  * This represents a single field on a BingoCard that can be marked off as
- * solved.
+ * solved. BingoTiles obtained from a BingoCard are lightweight views of one
+ * position on that BingoCard: they don't hold any state themselves, but read and
+ * write the BingoCard's term ids and marks.
  * 
  * @author Lucas Schlierf
  */
 public class BingoTile {
     private String text;
     private boolean markedOff;
+    private BingoCard card;
+    private int index;
 
     /**
      * Creates a new BingoTile with the specified text and marks it as not yet
@@ -21,24 +25,51 @@ public class BingoTile {
         markedOff = false;
     }
 
+    /**
+     * Creates a view of the specified position on a BingoCard.
+     * 
+     * @param card  the BingoCard
+     * @param index the index of the position ({@code y * size + x})
+     */
+    BingoTile(BingoCard card, int index) {
+        attach(card, index);
+    }
+
     public String getText() {
-        return text;
+        return card != null ? card.getText(index) : text;
     }
 
     public boolean isMarkedOff() {
-        return markedOff;
+        return card != null ? card.isMarked(index) : markedOff;
     }
 
     public void markOff() {
-        markedOff = true;
+        setMarkedOff(true);
     }
 
     protected void setMarkedOff(boolean markedOff) {
         this.markedOff = markedOff;
+        if (card != null)
+            card.updateMark(index, markedOff);
+    }
+
+    /**
+     * Turns this BingoTile into a view of a position on the specified BingoCard,
+     * so that marking it off directly also updates the marked state kept by the
+     * BingoCard.
+     * 
+     * @param card  the BingoCard holding this BingoTile, or {@code null} to unlink
+     *              it
+     * @param index the index of this BingoTile on the BingoCard ({@code y * size +
+     *              x})
+     */
+    void attach(BingoCard card, int index) {
+        this.card = card;
+        this.index = index;
     }
 
     @Override
     public String toString() {
-        return (markedOff ? "x\n" : "o\n") + text;
+        return (isMarkedOff() ? "x\n" : "o\n") + getText();
     }
 }
@@ -0,0 +1,70 @@
+package BingoParts;
+
+/**
+ * A Bloom filter over 64-bit fingerprints, with about ten bits per expected
+ * value and five probes, which gives roughly one percent false positives. The
+ * probes are derived from the two halves of the fingerprint, so no further
+ * hashing is needed.
+ *
+ * @author Lucas Schlierf
+ */
+final class BloomFilter {
+
+    private static final int BITS_PER_VALUE = 10;
+    private static final int PROBES = 5;
+
+    private final long[] bits;
+    private final long numBits;
+
+    /**
+     * Creates a new, empty BloomFilter for the specified number of values.
+     *
+     * @param expected the expected number of values
+     */
+    BloomFilter(long expected) {
+        long words = Math.max(1, (Math.max(expected, 1) * BITS_PER_VALUE + 63) / 64);
+        this.bits = new long[(int) Math.min(words, Integer.MAX_VALUE - 8)];
+        this.numBits = (long) bits.length * 64;
+    }
+
+    /**
+     * Adds the fingerprint to the filter.
+     *
+     * @param fingerprint the fingerprint
+     * @return {@code true} if the fingerprint definitely wasn't added before,
+     *         {@code false} if it might have been
+     */
+    boolean add(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        boolean added = false;
+        for (int i = 0; i < PROBES; i++) {
+            long bit = ((h1 + i * h2) & 0xFFFFFFFFL) % numBits;
+            long word = bits[(int) (bit >>> 6)];
+            long flag = 1L << bit;
+            if ((word & flag) == 0) {
+                bits[(int) (bit >>> 6)] = word | flag;
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Checks wether the fingerprint might have been added.
+     *
+     * @param fingerprint the fingerprint
+     * @return {@code false} if the fingerprint definitely wasn't added,
+     *         {@code true} if it might have been
+     */
+    boolean mightContain(long fingerprint) {
+        int h1 = (int) fingerprint;
+        int h2 = (int) (fingerprint >>> 32);
+        for (int i = 0; i < PROBES; i++) {
+            long bit = ((h1 + i * h2) & 0xFFFFFFFFL) % numBits;
+            if ((bits[(int) (bit >>> 6)] & 1L << bit) == 0)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,468 @@
+package BingoParts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A file recording which BingoCards went out in a print run, so they can be
+ * reprinted, claims can be checked and the print run can be analyzed without
+ * the PDFs. BingoCards are written one after another while they are printed,
+ * and read through a memory map, so any BingoCard is found by its number
+ * without reading the ones before it.
+ * <p>
+ * An archive consists of the magic number "BCAR", the format version, the size
+ * of the BingoCards and the name of the BingoSet, followed by the BingoCards,
+ * the texts of the terms, an index with the offset of every BingoCard and a
+ * trailer with the offsets of the texts and the index, the number of BingoCards
+ * and the magic number again. A BingoCard is stored as its id and the term id
+ * of every position, row by row, as variable length numbers, with 0 for a free
+ * position and the TermDictionary id plus one otherwise. So a BingoCard from a
+ * BingoSet with less than 128 entries takes one byte per position, and one with
+ * less than 16384 entries two bytes, plus four bytes in the index.
+ * <p>
+ * Archives are written to a temporary file that is moved into place when it is
+ * complete, and can be up to 2 GB large, which is enough for tens of millions
+ * of BingoCards.
+ *
+ * @author Lucas Schlierf
+ */
+public final class CardArchive {
+
+    private static final int MAGIC = 0x42434152;
+    private static final int VERSION = 1;
+    private static final int TRAILER_SIZE = 16;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final String setName;
+    private final int size;
+    private final int count;
+    private final int cardsStart;
+    private final int termsStart;
+    private final int indexStart;
+    private final TermDictionary dictionary;
+
+    private CardArchive(Path file, ByteBuffer buffer, String setName, int size, int count, int cardsStart,
+            int termsStart, int indexStart, TermDictionary dictionary) {
+        this.file = file;
+        this.buffer = buffer;
+        this.setName = setName;
+        this.size = size;
+        this.count = count;
+        this.cardsStart = cardsStart;
+        this.termsStart = termsStart;
+        this.indexStart = indexStart;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Opens an archive. Only the header, the trailer and the texts of the terms
+     * are read, the BingoCards are read from the memory map when they are asked
+     * for.
+     *
+     * @param file the archive
+     * @return the archive
+     * @throws IOException if the file can't be read, or isn't a complete archive
+     */
+    public static CardArchive open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 12 + TRAILER_SIZE || channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + " is not a card archive");
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int trailer = buffer.limit() - TRAILER_SIZE;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(trailer + 12) != MAGIC)
+                throw new IOException(file + " is not a complete card archive");
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException(file + " has the unknown format version " + buffer.getInt(4));
+            try {
+                int size = buffer.getInt(8);
+                int termsStart = buffer.getInt(trailer);
+                int indexStart = buffer.getInt(trailer + 4);
+                int count = buffer.getInt(trailer + 8);
+                if (indexStart + 4L * count != trailer)
+                    throw new IOException(file + " is damaged");
+                ByteBuffer in = buffer.duplicate().position(12);
+                String setName = getString(in);
+                int cardsStart = in.position();
+                in.position(termsStart).limit(indexStart);
+                TermDictionary dictionary = new TermDictionary();
+                int terms = getVarInt(in);
+                for (int i = 0; i < terms; i++) {
+                    if (dictionary.intern(getString(in)) != i)
+                        throw new IOException(file + " contains a term twice");
+                }
+                return new CardArchive(file, buffer, setName, size, count, cardsStart, termsStart, indexStart,
+                        dictionary);
+            } catch (RuntimeException e) {
+                throw new IOException(file + " is damaged", e);
+            }
+        }
+    }
+
+    /**
+     * Creates a new archive. It only becomes visible under its name once
+     * {@code Writer.finish()} is called.
+     *
+     * @param file    the archive
+     * @param setName the name of the BingoSet of the BingoCards
+     * @param size    the size of the BingoCards
+     * @return a Writer to add the BingoCards with
+     * @throws IOException if the temporary file can't be created
+     */
+    public static Writer create(Path file, String setName, int size) throws IOException {
+        return new Writer(file, setName, size);
+    }
+
+    public String getSetName() {
+        return setName;
+    }
+
+    /**
+     * Returns the size of the BingoCards.
+     *
+     * @return the size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of BingoCards in this archive.
+     *
+     * @return the number of BingoCards
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the TermDictionary the term ids of the BingoCards refer to, e.g.
+     * for a ClaimVerifier.
+     *
+     * @return the TermDictionary
+     */
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the id of the specified BingoCard, see {@code BingoCard.getId()}.
+     *
+     * @param number the number of the BingoCard, from 0 (inclusive) to
+     *               {@code getCount()} (exclusive), in the order they were
+     *               written
+     * @return the id, or 0 if the BingoCard was drawn at random
+     */
+    public long getId(int number) {
+        return getVarLong(card(number));
+    }
+
+    /**
+     * Returns the term ids of the specified BingoCard, row by row.
+     *
+     * @param number the number of the BingoCard, from 0 (inclusive) to
+     *               {@code getCount()} (exclusive)
+     * @return the ids of {@code getDictionary()}, with {@code -1} for free
+     *         positions
+     */
+    public int[] getTerms(int number) {
+        ByteBuffer in = card(number);
+        getVarLong(in);
+        return getTerms(in);
+    }
+
+    /**
+     * Creates the specified BingoCard again, without any marks.
+     *
+     * @param number the number of the BingoCard, from 0 (inclusive) to
+     *               {@code getCount()} (exclusive)
+     * @return the BingoCard
+     */
+    public BingoCard getCard(int number) {
+        ByteBuffer in = card(number);
+        long id = getVarLong(in);
+        BingoCard card = new BingoCard(dictionary, size, getTerms(in));
+        card.setId(id);
+        return card;
+    }
+
+    /**
+     * Finds the BingoCard with the specified id. The ids aren't indexed, so this
+     * reads the id of every BingoCard up to the one searched for.
+     *
+     * @param id the id, as printed below the BingoCard
+     * @return the number of the BingoCard, or {@code -1} if there is none with
+     *         that id
+     */
+    public int find(long id) {
+        if (id == 0)
+            return -1;
+        for (int i = 0; i < count; i++) {
+            if (getId(i) == id)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Counts how many BingoCards every term is on, reading all BingoCards in one
+     * sequential pass.
+     *
+     * @return the number of BingoCards per term id of {@code getDictionary()}
+     */
+    public int[] countTerms() {
+        int[] counts = new int[dictionary.size()];
+        ByteBuffer in = buffer.duplicate().position(cardsStart).limit(termsStart);
+        for (int i = 0; i < count; i++) {
+            getVarLong(in);
+            for (int cell = 0; cell < size * size; cell++) {
+                int term = getVarInt(in) - 1;
+                if (term >= 0)
+                    counts[term]++;
+            }
+        }
+        return counts;
+    }
+
+    private ByteBuffer card(int number) {
+        if (number < 0 || number >= count)
+            throw new IndexOutOfBoundsException("Card " + number + " is not in this archive of " + count);
+        return buffer.duplicate().position(buffer.getInt(indexStart + 4 * number)).limit(termsStart);
+    }
+
+    private int[] getTerms(ByteBuffer in) {
+        int[] terms = new int[size * size];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = getVarInt(in) - 1;
+        }
+        return terms;
+    }
+
+    /**
+     * Merges archives into one, in the specified order, e.g. the archives of the
+     * shards of a print run. All parts have to be from the same BingoSet and
+     * TermDictionary.
+     *
+     * @param parts  the archives to merge
+     * @param target the merged archive
+     * @throws IOException if reading a part or writing the merged archive fails,
+     *                     or the parts don't belong together
+     */
+    static void merge(List<Path> parts, Path target) throws IOException {
+        CardArchive[] archives = new CardArchive[parts.size()];
+        CardArchive terms = null;
+        for (int i = 0; i < archives.length; i++) {
+            archives[i] = open(parts.get(i));
+            if (terms == null || archives[i].dictionary.size() > terms.dictionary.size())
+                terms = archives[i];
+        }
+        if (terms == null)
+            throw new IOException("No archives to merge");
+        try (Writer writer = create(target, terms.setName, terms.size)) {
+            for (CardArchive archive : archives) {
+                writer.append(archive, terms);
+            }
+            writer.terms = terms.dictionary;
+            writer.finish();
+        }
+    }
+
+    /**
+     * Writes an archive through a buffer into a temporary file, keeping only the
+     * offsets of the BingoCards in memory.
+     */
+    public static final class Writer implements Closeable {
+        private final Path file;
+        private final Path temp;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int size;
+        private SetEntries terms;
+        private int[] offsets;
+        private int count;
+        private long written;
+        private boolean finished;
+
+        private Writer(Path file, String setName, int size) throws IOException {
+            this.file = file;
+            this.temp = file.resolveSibling("." + file.getFileName() + ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.size = size;
+            this.offsets = new int[1024];
+            putInt(MAGIC);
+            putInt(VERSION);
+            putInt(size);
+            putString(setName);
+        }
+
+        /**
+         * Adds a BingoCard. All BingoCards of an archive have to share one
+         * TermDictionary, like the BingoCards of one CardGenerator do.
+         *
+         * @param card the BingoCard
+         * @throws IOException              if writing fails, or the archive would
+         *                                  become larger than 2 GB
+         * @throws IllegalArgumentException if the BingoCard has a different size
+         *                                  or TermDictionary than the ones before
+         */
+        public void write(BingoCard card) throws IOException {
+            if (card.getSize() != size)
+                throw new IllegalArgumentException("The BingoCards of this archive have size " + size);
+            if (terms == null)
+                terms = card.getDictionary();
+            else if (terms != card.getDictionary())
+                throw new IllegalArgumentException("The BingoCards of an archive have to share one TermDictionary");
+            addOffset(written + buffer.position());
+            putVarLong(card.getId());
+            for (int i = 0; i < size * size; i++) {
+                putVarInt(card.getTerm(i) + 1);
+            }
+        }
+
+        /**
+         * Copies the BingoCards of another archive, whose term ids have to mean
+         * the same as the ones of the archive with the specified terms.
+         */
+        private void append(CardArchive archive, CardArchive terms) throws IOException {
+            if (archive.size != size || !archive.setName.equals(terms.setName))
+                throw new IOException(archive.file + " is from a different print run than " + terms.file);
+            for (int i = 0; i < archive.dictionary.size(); i++) {
+                if (!archive.dictionary.get(i).equals(terms.dictionary.get(i)))
+                    throw new IOException(archive.file + " has different terms than " + terms.file);
+            }
+            long shift = written + buffer.position() - archive.cardsStart;
+            for (int i = 0; i < archive.count; i++) {
+                addOffset(archive.buffer.getInt(archive.indexStart + 4 * i) + shift);
+            }
+            drain();
+            ByteBuffer cards = archive.buffer.slice(archive.cardsStart, archive.termsStart - archive.cardsStart);
+            while (cards.hasRemaining()) {
+                written += channel.write(cards);
+            }
+        }
+
+        /**
+         * Writes the texts of the terms, the index and the trailer, and moves the
+         * archive into place.
+         *
+         * @throws IOException if writing fails, or the archive would become larger
+         *                     than 2 GB
+         */
+        public void finish() throws IOException {
+            long termsStart = written + buffer.position();
+            SetEntries entries = terms == null ? new TermDictionary() : terms;
+            int termCount = entries.size();
+            putVarInt(termCount);
+            for (int i = 0; i < termCount; i++) {
+                putString(entries.get(i));
+            }
+            long indexStart = written + buffer.position();
+            if (indexStart + 4L * count + TRAILER_SIZE > Integer.MAX_VALUE)
+                throw new IOException("The card archive would be larger than 2 GB");
+            for (int i = 0; i < count; i++) {
+                putInt(offsets[i]);
+            }
+            putInt((int) termsStart);
+            putInt((int) indexStart);
+            putInt(count);
+            putInt(MAGIC);
+            drain();
+            channel.force(true);
+            channel.close();
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        }
+
+        /**
+         * Closes the archive, deleting it if it wasn't finished.
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!finished)
+                Files.deleteIfExists(temp);
+        }
+
+        private void addOffset(long offset) throws IOException {
+            if (offset > Integer.MAX_VALUE)
+                throw new IOException("The card archive would be larger than 2 GB");
+            if (count == offsets.length)
+                offsets = Arrays.copyOf(offsets, count * 2);
+            offsets[count++] = (int) offset;
+        }
+
+        private void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        private void putVarInt(int value) throws IOException {
+            putVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void putVarLong(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        private void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putVarInt(bytes.length);
+            for (int offset = 0; offset < bytes.length;) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static int getVarInt(ByteBuffer in) {
+        return (int) getVarLong(in);
+    }
+
+    private static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[getVarInt(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,78 @@
+package BingoParts;
+
+/**
+ * Computes canonical 64-bit fingerprints of BingoCards. The layout fingerprint
+ * depends on which text is in which cell, the terms fingerprint only on which
+ * texts are on the BingoCard at all, so two BingoCards with the same texts in a
+ * different arrangement share it.
+ * <p>
+ * Fingerprints are computed from the term ids, so they can only be compared
+ * between BingoCards sharing a TermDictionary, e.g. ones from the same
+ * CardGenerator or BingoSet.
+ *
+ * @author Lucas Schlierf
+ */
+public final class CardFingerprint {
+
+    static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    /**
+     * This class only has static Methods, so it shouldn't be instanciated.
+     */
+    private CardFingerprint() {
+    }
+
+    /**
+     * Returns the fingerprint of the specified BingoCard.
+     *
+     * @param card      the BingoCard
+     * @param sameTerms wether BingoCards with the same texts in a different
+     *                  arrangement should get the same fingerprint
+     * @return the fingerprint
+     */
+    public static long of(BingoCard card, boolean sameTerms) {
+        return sameTerms ? terms(card) : layout(card);
+    }
+
+    /**
+     * Returns the fingerprint of the exact layout of the specified BingoCard.
+     *
+     * @param card the BingoCard
+     * @return the fingerprint
+     */
+    public static long layout(BingoCard card) {
+        int size = card.getSize();
+        long hash = size;
+        for (int i = 0; i < size * size; i++) {
+            hash = (hash + mix(card.getTerm(i))) * GOLDEN;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Returns the fingerprint of the set of texts on the specified BingoCard,
+     * ignoring their arrangement. Summing the mixed term ids makes the order
+     * irrelevant without having to sort them.
+     *
+     * @param card the BingoCard
+     * @return the fingerprint
+     */
+    public static long terms(BingoCard card) {
+        int size = card.getSize();
+        long sum = 0;
+        for (int i = 0; i < size * size; i++) {
+            sum += mix(card.getTerm(i));
+        }
+        return mix(sum ^ size * GOLDEN);
+    }
+
+    /**
+     * The finalizer of SplitMix64, which spreads every input bit over the whole
+     * output.
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,221 @@
+package BingoParts;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.util.Matrix;
+
+/**
+ * Draws BingoCards into the pages of one PDF. The grid of a BingoCard only
+ * depends on its size, column width and lines per row, so it is drawn once per
+ * PDF as a Form XObject and every page only refers to it, scaled to the font
+ * size of the page. The same goes for the marks separating the BingoCards on a
+ * page. Only the texts of the BingoTiles are drawn per BingoCard, one text
+ * operator per line, which skips the empty parts of the line by moving the
+ * text position instead of writing spaces.
+ * <p>
+ * The result looks exactly like drawing the ASCII lines of
+ * {@code CardLayout.toLines(true)} in Courier, line by line.
+ *
+ * @author Lucas Schlierf
+ */
+final class CardForms {
+
+    /**
+     * The font everything is drawn in. It has to be monospaced, so the grid and
+     * the texts line up.
+     */
+    static final PDFont FONT = PDType1Font.COURIER;
+
+    /**
+     * The width of every character of {@code FONT}, in thousandths of the font
+     * size.
+     */
+    private static final float CHAR_WIDTH = 600;
+
+    private final PDDocument document;
+    private final PDResources resources;
+    private final Map<Long, PDFormXObject> grids;
+    private PDFormXObject barriers;
+
+    /**
+     * Creates new CardForms for the specified PDF.
+     *
+     * @param document the PDF, the forms can only be used in it
+     */
+    CardForms(PDDocument document) {
+        this.document = document;
+        this.resources = new PDResources();
+        this.grids = new HashMap<>();
+    }
+
+    /**
+     * Adds a new page to the PDF. All pages share one resource dictionary, which
+     * names the font and the forms, so it is stored once instead of once per
+     * page.
+     *
+     * @return the page
+     */
+    PDPage newPage() {
+        PDPage page = new PDPage();
+        page.setResources(resources);
+        document.addPage(page);
+        return page;
+    }
+
+    /**
+     * Draws a BingoCard: its grid from the form and its texts.
+     *
+     * @param contentStream the content stream of the page
+     * @param layout        the layout of the BingoCard
+     * @param x             the left edge of the BingoCard
+     * @param y             the baseline of the first line of the BingoCard
+     * @param fontSize      the font size
+     * @throws IOException if an IO exception occurs while drawing
+     */
+    void drawCard(PDPageContentStream contentStream, CardLayout layout, float x, float y, float fontSize)
+            throws IOException {
+        contentStream.saveGraphicsState();
+        contentStream.transform(new Matrix(fontSize, 0, 0, fontSize, x, y));
+        contentStream.drawForm(grid(layout));
+        contentStream.restoreGraphicsState();
+
+        contentStream.beginText();
+        contentStream.setFont(FONT, fontSize);
+        contentStream.newLineAtOffset(x, y);
+        int lineCount = layout.getLineCount();
+        int size = layout.getSize();
+        int width = layout.getColumnWidth();
+        int skipped = 0;
+        for (int line = 1; line < layout.getHeight() - 1; line++) {
+            int row = (line - 1) / (lineCount + 1);
+            int textLine = (line - 1) % (lineCount + 1);
+            if (textLine == lineCount)
+                continue;
+            List<Object> parts = new ArrayList<>(2 * size);
+            // characters to move right before the next text, starting behind the
+            // left border
+            int gap = 1;
+            for (int k = 0; k < size; k++) {
+                String[] cell = layout.getCell(row * size + k);
+                if (textLine < cell.length && !cell[textLine].isEmpty()) {
+                    parts.add(-gap * CHAR_WIDTH);
+                    parts.add(cell[textLine]);
+                    gap = width + 1 - cell[textLine].length();
+                } else {
+                    gap += width + 1;
+                }
+            }
+            if (parts.isEmpty())
+                continue;
+            contentStream.newLineAtOffset(0, -(line - skipped) * fontSize);
+            skipped = line;
+            contentStream.showTextWithPositioning(parts.toArray());
+        }
+        contentStream.endText();
+    }
+
+    /**
+     * Draws the marks separating the BingoCards on a page.
+     *
+     * @param contentStream the content stream of the page
+     * @throws IOException if an IO exception occurs while drawing
+     */
+    void drawBarriers(PDPageContentStream contentStream) throws IOException {
+        if (barriers == null) {
+            barriers = newForm(new PDRectangle(0, 0, 612, 792));
+            try (PDPageContentStream form = open(barriers)) {
+                form.setFont(FONT, 10);
+                form.beginText();
+                form.newLineAtOffset(0, 264);
+                form.showText("-");
+                form.newLineAtOffset(0, 264);
+                form.showText("-");
+                form.newLineAtOffset(605, 0);
+                form.showText("-");
+                form.newLineAtOffset(0, -264);
+                form.showText("-");
+                form.endText();
+
+                form.beginText();
+                form.newLineAtOffset(300, 2);
+                form.showText("|");
+                form.newLineAtOffset(0, 782);
+                form.showText("|");
+                form.endText();
+            }
+        }
+        contentStream.drawForm(barriers);
+    }
+
+    /**
+     * Returns the grid for the specified layout at font size 1, with the
+     * baseline of the first line at the origin, drawing it on first use.
+     */
+    private PDFormXObject grid(CardLayout layout) throws IOException {
+        int size = layout.getSize();
+        int width = layout.getColumnWidth();
+        int lineCount = layout.getLineCount();
+        long key = (long) size << 42 | (long) width << 21 | lineCount;
+        PDFormXObject grid = grids.get(key);
+        if (grid != null)
+            return grid;
+        int height = layout.getHeight();
+        grid = newForm(new PDRectangle(0, -height, layout.getWidth() * CHAR_WIDTH / 1000, height + 1));
+        String[] borders = ConsoleRenderer.borders(size, width, true);
+        Object[] walls = new Object[2 * size + 1];
+        walls[0] = "|";
+        for (int k = 0; k < size; k++) {
+            walls[2 * k + 1] = -width * CHAR_WIDTH;
+            walls[2 * k + 2] = "|";
+        }
+        try (PDPageContentStream form = open(grid)) {
+            form.beginText();
+            form.setFont(FONT, 1);
+            form.setLeading(1);
+            for (int line = 0; line < height; line++) {
+                if (line == 0) {
+                    form.showText(borders[0]);
+                } else if (line == height - 1) {
+                    form.showText(borders[2]);
+                } else if ((line - 1) % (lineCount + 1) == lineCount) {
+                    form.showText(borders[1]);
+                } else {
+                    form.showTextWithPositioning(walls);
+                }
+                form.newLine();
+            }
+            form.endText();
+        }
+        grids.put(key, grid);
+        return grid;
+    }
+
+    private PDFormXObject newForm(PDRectangle bBox) {
+        PDFormXObject form = new PDFormXObject(document);
+        form.setBBox(bBox);
+        form.setResources(new PDResources());
+        return form;
+    }
+
+    /**
+     * Opens a compressed content stream for the specified form.
+     */
+    private PDPageContentStream open(PDFormXObject form) throws IOException {
+        OutputStream out = form.getContentStream().createOutputStream(COSName.FLATE_DECODE);
+        return new PDPageContentStream(document, form, out);
+    }
+}
@@ -0,0 +1,595 @@
+package BingoParts;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Generates any number of BingoCards from a BingoSet that is only loaded once.
+ * Every BingoCard is drawn with a partial Fisher-Yates shuffle, so creating a
+ * BingoCard only costs as many random numbers as it has BingoTiles.
+ * <p>
+ * BingoSets held in memory are shuffled in a copy of their term ids. BingoSets
+ * that are only accessible through SetEntries, like CompiledSets, are shuffled
+ * sparsely, remembering only the swapped positions, so they are never
+ * materialized: only the entries actually drawn are read and added to the
+ * TermDictionary.
+ * <p>
+ * BingoSets with weights or categories are drawn through a WeightedDraw, in
+ * constant time per BingoTile as well.
+ *
+ * @author Lucas Schlierf
+ */
+public final class CardGenerator {
+    private final TermDictionary dictionary;
+    private final int[] pool;
+    private final SetEntries source;
+    private final int[] sourceIds;
+    private final int entries;
+    private final int size;
+    private final boolean addFreeTile;
+    private final WeightedDraw weighted;
+    private final SetVersion snapshot;
+    private final Sampler sampler;
+    private final SplittableRandom random;
+    private final ThreadLocal<Sampler> threadSamplers;
+    private volatile long version;
+    private volatile boolean versionKnown;
+
+    /**
+     * Creates a new CardGenerator drawing from the specified term ids.
+     *
+     * @param dictionary  the TermDictionary the term ids refer to
+     * @param pool        the term ids to draw from
+     * @param size        the size of the BingoCards
+     * @param addFreeTile wether to add a free BingoTile in the middle (only works
+     *                    for odd sizes)
+     */
+    CardGenerator(TermDictionary dictionary, int[] pool, int size, boolean addFreeTile) {
+        this(dictionary, pool, null, pool.length, size, addFreeTile, null, null);
+    }
+
+    /**
+     * Creates a new CardGenerator drawing from the specified entries without
+     * materializing them.
+     *
+     * @param source      the entries to draw from
+     * @param size        the size of the BingoCards
+     * @param addFreeTile wether to add a free BingoTile in the middle (only works
+     *                    for odd sizes)
+     */
+    CardGenerator(SetEntries source, int size, boolean addFreeTile) {
+        this(new TermDictionary(), null, source, source.size(), size, addFreeTile, null, null);
+    }
+
+    private CardGenerator(TermDictionary dictionary, int[] pool, SetEntries source, int entries, int size,
+            boolean addFreeTile, WeightedDraw weighted, SetVersion snapshot) {
+        this.dictionary = dictionary;
+        this.pool = pool;
+        this.source = source;
+        this.sourceIds = source == null ? null : new int[entries];
+        this.entries = entries;
+        this.size = size;
+        this.addFreeTile = addFreeTile && size % 2 == 1;
+        this.weighted = weighted;
+        this.snapshot = snapshot;
+        this.sampler = new Sampler();
+        this.random = new SplittableRandom();
+        this.threadSamplers = ThreadLocal.withInitial(Sampler::new);
+    }
+
+    /**
+     * Creates a new CardGenerator for the current version of the specified
+     * BingoSet, reading the BingoSet once. Changes to the BingoSet made later
+     * don't affect the CardGenerator.
+     *
+     * @param setName     the name of the BingoSet
+     * @param size        the size of the BingoCards
+     * @param addFreeTile wether to add a free BingoTile in the middle (only works
+     *                    for odd sizes)
+     * @return {@code null} if the BingoSet doesn't contain enough entries, or the
+     *         new CardGenerator otherwise
+     * @throws IOException if an IOException occurs while fetching the BingoSet
+     */
+    public static CardGenerator forSet(String setName, int size, boolean addFreeTile) throws IOException {
+        SetVersion version = BingoSets.getVersion(setName);
+        if (version == null)
+            return null;
+        return forVersion(version, size, addFreeTile);
+    }
+
+    /**
+     * Creates a new CardGenerator for the specified version of a BingoSet.
+     *
+     * @param version     the version of the BingoSet
+     * @param size        the size of the BingoCards
+     * @param addFreeTile wether to add a free BingoTile in the middle (only works
+     *                    for odd sizes)
+     * @return {@code null} if the BingoSet doesn't contain enough entries, or the
+     *         new CardGenerator otherwise
+     */
+    public static CardGenerator forVersion(SetVersion version, int size, boolean addFreeTile) {
+        WeightedSet set = version.getSet();
+        List<String> lines = set.getTexts();
+        TermDictionary dictionary = version.getDictionary();
+        int[] pool = new int[lines.size()];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = dictionary.intern(lines.get(i));
+        }
+        WeightedDraw weighted = null;
+        if (!set.isUniform()) {
+            weighted = WeightedDraw.of(set, size, addFreeTile && size % 2 == 1);
+            if (weighted == null)
+                return null;
+        }
+        CardGenerator generator = new CardGenerator(dictionary, pool, null, pool.length, size, addFreeTile, weighted,
+                version);
+        return pool.length < generator.entriesPerCard() ? null : generator;
+    }
+
+    /**
+     * Creates a new CardGenerator drawing from the specified entries, e.g. a
+     * CompiledSet. The entries are only read when they are drawn.
+     *
+     * @param entries     the entries to draw from
+     * @param size        the size of the BingoCards
+     * @param addFreeTile wether to add a free BingoTile in the middle (only works
+     *                    for odd sizes)
+     * @return {@code null} if there aren't enough entries, or the new
+     *         CardGenerator otherwise
+     */
+    public static CardGenerator forEntries(SetEntries entries, int size, boolean addFreeTile) {
+        CardGenerator generator = new CardGenerator(entries, size, addFreeTile);
+        return entries.size() < generator.entriesPerCard() ? null : generator;
+    }
+
+    /**
+     * Returns how many entries of the BingoSet each BingoCard uses.
+     *
+     * @return the number of entries per BingoCard
+     */
+    public int entriesPerCard() {
+        return size * size - (addFreeTile ? 1 : 0);
+    }
+
+    /**
+     * Creates a new BingoCard.
+     *
+     * @return the new BingoCard
+     */
+    public synchronized BingoCard next() {
+        return sampler.next(random);
+    }
+
+    /**
+     * Creates a new BingoCard using the specified source of randomness. Uses a
+     * sparse draw with a scratch space of the calling thread, so it only takes
+     * time proportional to the size of the BingoCard, not of the BingoSet.
+     *
+     * @param random the source of randomness
+     * @return the new BingoCard
+     */
+    public BingoCard next(SplittableRandom random) {
+        return threadSamplers.get().next(random, true);
+    }
+
+    /**
+     * Streams the specified number of new BingoCards.
+     *
+     * @param count the number of BingoCards
+     * @return a sequential Stream of new BingoCards
+     */
+    public Stream<BingoCard> generate(long count) {
+        return generate(count, false);
+    }
+
+    /**
+     * Streams the specified number of new BingoCards. A parallel Stream splits the
+     * work across all cores, with every part using its own split of the random
+     * generator and its own scratch space.
+     *
+     * @param count    the number of BingoCards
+     * @param parallel wether the Stream should be parallel
+     * @return a Stream of new BingoCards
+     */
+    public Stream<BingoCard> generate(long count, boolean parallel) {
+        SplittableRandom random;
+        synchronized (this) {
+            random = this.random.split();
+        }
+        return StreamSupport.stream(new CardSpliterator(0, count, random), parallel);
+    }
+
+    /**
+     * Streams the specified number of new BingoCards, none of which has been added
+     * to the specified UniqueCards before. Duplicates are drawn again, which
+     * hardly ever happens unless the count comes close to the number of distinct
+     * BingoCards. The UniqueCards can be shared between several Streams, even
+     * running at the same time, to keep a whole print run unique.
+     *
+     * @param count  the number of BingoCards
+     * @param unique remembers the BingoCards already generated
+     * @return a sequential Stream of new, unique BingoCards
+     * @throws IllegalArgumentException if there aren't enough distinct BingoCards
+     */
+    public Stream<BingoCard> generateUnique(long count, UniqueCards unique) {
+        if (unique.size() + (double) count > distinctCards(unique.isSameTerms()))
+            throw new IllegalArgumentException("The BingoSet only allows " + (long) distinctCards(unique.isSameTerms())
+                    + " distinct BingoCards");
+        return generate(Long.MAX_VALUE).filter(unique::add).limit(count);
+    }
+
+    /**
+     * Returns how many distinct BingoCards this CardGenerator can create, capped
+     * at about {@code 1e18}.
+     *
+     * @param sameTerms wether BingoCards with the same texts in a different
+     *                  arrangement count as the same
+     * @return the number of distinct BingoCards
+     */
+    public double distinctCards(boolean sameTerms) {
+        if (weighted != null)
+            return weighted.distinctCards(sameTerms);
+        int k = sameTerms ? Math.min(entriesPerCard(), entries - entriesPerCard()) : entriesPerCard();
+        double distinct = 1;
+        for (int i = 0; i < k && distinct < 1e18; i++) {
+            distinct = sameTerms ? distinct * (entries - i) / (i + 1) : distinct * (entries - i);
+        }
+        return Math.min(distinct, 1e18);
+    }
+
+    /**
+     * Returns the SetVersion this CardGenerator draws from.
+     *
+     * @return the SetVersion, or {@code null} if the CardGenerator wasn't created
+     *         for a BingoSet in storage
+     */
+    public SetVersion getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the version of the BingoSet, a hash of all its entries in order. It
+     * is computed on first use, which reads every entry once.
+     *
+     * @return the version
+     */
+    public long getSetVersion() {
+        if (!versionKnown) {
+            version = CardId.versionOf(new SetEntries() {
+                @Override
+                public int size() {
+                    return entries;
+                }
+
+                @Override
+                public String get(int index) {
+                    if (weighted != null)
+                        return weighted.getSet().toLine(index);
+                    return pool != null ? dictionary.get(pool[index]) : source.get(index);
+                }
+            });
+            versionKnown = true;
+        }
+        return version;
+    }
+
+    /**
+     * Returns the id of the BingoCard with the specified index, which
+     * {@code card()} creates for any master seed.
+     *
+     * @param index the index of the BingoCard
+     * @return the id
+     * @throws IllegalArgumentException if the index doesn't fit into an id
+     */
+    public long idOf(long index) {
+        return CardId.of(getSetVersion(), size, addFreeTile, index);
+    }
+
+    /**
+     * Creates the BingoCard with the specified index. The BingoCard only depends
+     * on the master seed, the entries of the BingoSet, the size, the free tile
+     * option and the index, so it can be created again at any time from its id,
+     * which it carries, without storing it. Creating it takes about as long as a
+     * random BingoCard.
+     *
+     * @param masterSeed the master seed of the print run
+     * @param index      the index of the BingoCard
+     * @return the BingoCard
+     * @throws IllegalArgumentException if the index doesn't fit into an id
+     */
+    public BingoCard card(long masterSeed, long index) {
+        long id = idOf(index);
+        SplittableRandom random = new SplittableRandom(
+                CardId.seed(masterSeed, getSetVersion(), size, addFreeTile, index));
+        BingoCard card = threadSamplers.get().next(random, true);
+        card.setId(id);
+        return card;
+    }
+
+    /**
+     * Creates the BingoCard with the specified id again.
+     *
+     * @param masterSeed the master seed the BingoCard was created with
+     * @param id         the id of the BingoCard
+     * @return the BingoCard
+     * @throws IllegalArgumentException if the id belongs to a different BingoSet,
+     *                                  size or free tile option
+     */
+    public BingoCard regenerate(long masterSeed, long id) {
+        if (!CardId.matches(id, getSetVersion()) || CardId.getSize(id) != size
+                || CardId.hasFreeTile(id) != addFreeTile)
+            throw new IllegalArgumentException(
+                    "The id " + CardId.format(id) + " doesn't belong to BingoCards of this CardGenerator");
+        return card(masterSeed, CardId.getIndex(id));
+    }
+
+    /**
+     * Streams BingoCards created with {@code card()}, starting at the specified
+     * index and skipping indexes whose BingoCards have been added to the
+     * UniqueCards before, until the specified number of BingoCards is reached.
+     *
+     * @param masterSeed the master seed of the print run
+     * @param firstIndex the index of the first BingoCard
+     * @param count      the number of BingoCards
+     * @param unique     remembers the BingoCards already generated
+     * @return a sequential Stream of unique BingoCards carrying their ids
+     * @throws IllegalArgumentException if there aren't enough distinct BingoCards
+     */
+    public Stream<BingoCard> generateSeeded(long masterSeed, long firstIndex, long count, UniqueCards unique) {
+        if (unique.size() + (double) count > distinctCards(unique.isSameTerms()))
+            throw new IllegalArgumentException("The BingoSet only allows " + (long) distinctCards(unique.isSameTerms())
+                    + " distinct BingoCards");
+        return LongStream.rangeClosed(firstIndex, CardId.MAX_INDEX).mapToObj(index -> card(masterSeed, index))
+                .filter(unique::add).limit(count);
+    }
+
+    /**
+     * Returns the indexes {@code generateSeeded()} would create its BingoCards
+     * from, deciding which duplicates to skip in one sequential pass. Splitting
+     * these indexes into ranges lets several threads create the BingoCards of a
+     * print run with {@code card()}, while every BingoCard still gets the same
+     * index and position for the same master seed, no matter how the threads are
+     * scheduled.
+     *
+     * @param masterSeed the master seed of the print run
+     * @param firstIndex the index of the first BingoCard
+     * @param count      the number of BingoCards
+     * @param unique     remembers the BingoCards already generated
+     * @return the indexes of the BingoCards, in ascending order
+     * @throws IllegalArgumentException if there aren't enough distinct BingoCards
+     */
+    public long[] seededIndexes(long masterSeed, long firstIndex, int count, UniqueCards unique) {
+        if (unique.size() + (double) count > distinctCards(unique.isSameTerms()))
+            throw new IllegalArgumentException("The BingoSet only allows " + (long) distinctCards(unique.isSameTerms())
+                    + " distinct BingoCards");
+        long[] indexes = new long[count];
+        int n = 0;
+        for (long index = firstIndex; n < count && index <= CardId.MAX_INDEX; index++) {
+            if (unique.add(card(masterSeed, index)))
+                indexes[n++] = index;
+        }
+        return n == count ? indexes : Arrays.copyOf(indexes, n);
+    }
+
+    /**
+     * Returns a source of new BingoCards with a split of the random generator and
+     * a scratch space of its own, for drawing BingoCards one at a time without
+     * setting up a Stream and a scratch space for every one of them. It must not
+     * be shared between threads.
+     *
+     * @return the source of new BingoCards
+     */
+    public Supplier<BingoCard> supplier() {
+        SplittableRandom random;
+        synchronized (this) {
+            random = this.random.split();
+        }
+        return supplier(random);
+    }
+
+    /**
+     * Returns a source of new BingoCards using the specified random generator and
+     * a scratch space of its own. Like the random generator, it must not be
+     * shared between threads.
+     *
+     * @param random the source of randomness
+     * @return the source of new BingoCards
+     */
+    Supplier<BingoCard> supplier(SplittableRandom random) {
+        Sampler sampler = new Sampler();
+        return () -> sampler.next(random);
+    }
+
+    /**
+     * Returns the number of entries this CardGenerator draws from.
+     *
+     * @return the number of entries
+     */
+    int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the term id of the specified entry.
+     *
+     * @param index the index of the entry, from 0 (inclusive), to
+     *              {@code getEntries()} (exclusive)
+     * @return the term id
+     */
+    int termAt(int index) {
+        return pool != null ? pool[index] : sourceTerm(index);
+    }
+
+    /**
+     * Returns the term id of the specified entry of the source, adding the entry
+     * to the TermDictionary the first time it is drawn. Concurrent callers may
+     * both intern the same entry, which is harmless since they get the same id.
+     */
+    private int sourceTerm(int index) {
+        int id = sourceIds[index];
+        if (id == 0) {
+            id = dictionary.intern(source.get(index)) + 1;
+            sourceIds[index] = id;
+        }
+        return id - 1;
+    }
+
+    /**
+     * The scratch space for drawing BingoCards, which must not be shared between
+     * threads. For in-memory pools this is a copy of the pool, which doesn't need
+     * to be restored after a draw, since any arrangement of it is just as good a
+     * starting point for the next one. For sparse draws this is a small
+     * open-addressing map of the positions swapped during the current draw.
+     */
+    private final class Sampler {
+        private int[] scratch;
+        private WeightedDraw.Scratch weightedScratch;
+        private int[] keys;
+        private int[] values;
+        private int[] stamps;
+        private int stamp;
+
+        BingoCard next(SplittableRandom random) {
+            return next(random, false);
+        }
+
+        /**
+         * Draws a new BingoCard. Sparse draws only depend on the random generator,
+         * not on earlier draws, so they are used for seeded BingoCards even if the
+         * pool is in memory.
+         */
+        BingoCard next(SplittableRandom random, boolean sparse) {
+            Metrics.Sample sample = Metrics.CARD_GENERATION.start();
+            int[] terms = new int[size * size];
+            int center = addFreeTile ? (size / 2) * size + size / 2 : -1;
+            if (weighted != null) {
+                if (weightedScratch == null)
+                    weightedScratch = weighted.newScratch();
+                weighted.draw(terms, center, pool, random, weightedScratch);
+            } else if (pool != null && !sparse) {
+                if (scratch == null)
+                    scratch = pool.clone();
+                int drawn = 0;
+                for (int i = 0; i < terms.length; i++) {
+                    if (i == center) {
+                        terms[i] = BingoCard.FREE;
+                        continue;
+                    }
+                    int j = drawn + random.nextInt(scratch.length - drawn);
+                    int term = scratch[j];
+                    scratch[j] = scratch[drawn];
+                    scratch[drawn++] = term;
+                    terms[i] = term;
+                }
+            } else {
+                if (keys == null) {
+                    int capacity = Integer.highestOneBit(Math.max(entriesPerCard(), 1) * 4 - 1) << 1;
+                    keys = new int[capacity];
+                    values = new int[capacity];
+                    stamps = new int[capacity];
+                }
+                if (++stamp == 0) {
+                    Arrays.fill(stamps, 0);
+                    stamp = 1;
+                }
+                int drawn = 0;
+                for (int i = 0; i < terms.length; i++) {
+                    if (i == center) {
+                        terms[i] = BingoCard.FREE;
+                        continue;
+                    }
+                    int j = drawn + random.nextInt(entries - drawn);
+                    int atJ = lookup(j);
+                    put(j, lookup(drawn));
+                    drawn++;
+                    terms[i] = termAt(atJ);
+                }
+            }
+            BingoCard card = new BingoCard(dictionary, size, terms);
+            sample.end();
+            return card;
+        }
+
+        private int slot(int key) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B9) >>> 7 & mask;
+            while (stamps[slot] == stamp && keys[slot] != key)
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        private int lookup(int position) {
+            int slot = slot(position);
+            return stamps[slot] == stamp ? values[slot] : position;
+        }
+
+        private void put(int position, int value) {
+            int slot = slot(position);
+            stamps[slot] = stamp;
+            keys[slot] = position;
+            values[slot] = value;
+        }
+    }
+
+    /**
+     * Splits a range of BingoCards to generate, handing every part its own random
+     * generator and Sampler.
+     */
+    private final class CardSpliterator implements Spliterator<BingoCard> {
+        private long from;
+        private final long to;
+        private final SplittableRandom random;
+        private final Sampler sampler;
+
+        CardSpliterator(long from, long to, SplittableRandom random) {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+            this.sampler = new Sampler();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super BingoCard> action) {
+            if (from >= to)
+                return false;
+            from++;
+            action.accept(sampler.next(random));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super BingoCard> action) {
+            for (; from < to; from++) {
+                action.accept(sampler.next(random));
+            }
+        }
+
+        @Override
+        public Spliterator<BingoCard> trySplit() {
+            long middle = (from + to) >>> 1;
+            if (middle <= from)
+                return null;
+            Spliterator<BingoCard> prefix = new CardSpliterator(from, middle, random.split());
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package BingoParts;
+
+import java.util.List;
+
+/**
+ * Packs everything needed to regenerate a BingoCard into 64 bits. Together with
+ * the master seed of the print run, which isn't part of the id so players can't
+ * make up valid ids, an id determines the BingoCard completely:
+ * <ul>
+ * <li>bits 63 to 48: the tag of the BingoSet, the top 16 bits of its
+ * version</li>
+ * <li>bits 47 to 43: the size of the BingoCard</li>
+ * <li>bit 42: wether the BingoCard has a free BingoTile</li>
+ * <li>bits 41 to 0: the index of the BingoCard in the print run</li>
+ * </ul>
+ * The version of a BingoSet is a hash of all its entries in order, so the tag
+ * tells apart BingoCards from different BingoSets, or from the same BingoSet
+ * before and after a change, with a chance of 1 in 65536 of missing it. Since
+ * the size is at least 3, no id is 0.
+ *
+ * @author Lucas Schlierf
+ */
+public final class CardId {
+
+    /**
+     * The largest index that fits into an id.
+     */
+    public static final long MAX_INDEX = (1L << 42) - 1;
+
+    private static final int MAX_SIZE = 31;
+
+    /**
+     * This class only has static Methods, so it shouldn't be instanciated.
+     */
+    private CardId() {
+    }
+
+    /**
+     * Creates an id.
+     *
+     * @param setVersion  the version of the BingoSet
+     * @param size        the size of the BingoCard
+     * @param addFreeTile wether the BingoCard has a free BingoTile
+     * @param index       the index of the BingoCard, from 0 to {@code MAX_INDEX}
+     * @return the id
+     * @throws IllegalArgumentException if the size or index don't fit
+     */
+    public static long of(long setVersion, int size, boolean addFreeTile, long index) {
+        if (size < 1 || size > MAX_SIZE)
+            throw new IllegalArgumentException("Size " + size + " doesn't fit into an id");
+        if (index < 0 || index > MAX_INDEX)
+            throw new IllegalArgumentException("Index " + index + " doesn't fit into an id");
+        return (setVersion & 0xFFFF_0000_0000_0000L) | (long) size << 43 | (addFreeTile ? 1L << 42 : 0) | index;
+    }
+
+    public static int getSetTag(long id) {
+        return (int) (id >>> 48);
+    }
+
+    public static int getSize(long id) {
+        return (int) (id >>> 43) & MAX_SIZE;
+    }
+
+    public static boolean hasFreeTile(long id) {
+        return (id & 1L << 42) != 0;
+    }
+
+    public static long getIndex(long id) {
+        return id & MAX_INDEX;
+    }
+
+    /**
+     * Checks wether the id belongs to a BingoSet with the specified version.
+     *
+     * @param id         the id
+     * @param setVersion the version of the BingoSet
+     * @return {@code true} if the tags match
+     */
+    public static boolean matches(long id, long setVersion) {
+        return getSetTag(id) == (int) (setVersion >>> 48);
+    }
+
+    /**
+     * Formats an id as four groups of four hex digits, like
+     * {@code 3F2A-2C00-0000-0017}, to be printed on the BingoCard.
+     *
+     * @param id the id
+     * @return the formatted id
+     */
+    public static String format(long id) {
+        StringBuilder out = new StringBuilder(19);
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            out.append(Character.toUpperCase(Character.forDigit((int) (id >>> shift) & 0xF, 16)));
+            if (shift % 16 == 0 && shift > 0)
+                out.append('-');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Parses an id formatted with {@code format()}. Dashes and spaces are ignored,
+     * so ids can be typed in any grouping.
+     *
+     * @param text the formatted id
+     * @return the id
+     * @throws IllegalArgumentException if the text isn't an id
+     */
+    public static long parse(String text) {
+        String digits = text.replace("-", "").replace(" ", "");
+        if (digits.length() != 16)
+            throw new IllegalArgumentException("'" + text + "' is not a BingoCard id");
+        try {
+            return Long.parseUnsignedLong(digits, 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("'" + text + "' is not a BingoCard id", e);
+        }
+    }
+
+    /**
+     * Computes the version of a BingoSet from its entries, in order.
+     *
+     * @param entries the entries
+     * @return the version
+     */
+    static long versionOf(List<String> entries) {
+        long hash = entries.size();
+        for (String entry : entries) {
+            hash = versionStep(hash, entry);
+        }
+        return CardFingerprint.mix(hash);
+    }
+
+    /**
+     * Computes the version of a BingoSet from its entries, in order.
+     *
+     * @param entries the entries
+     * @return the version
+     */
+    static long versionOf(SetEntries entries) {
+        long hash = entries.size();
+        for (int i = 0; i < entries.size(); i++) {
+            hash = versionStep(hash, entries.get(i));
+        }
+        return CardFingerprint.mix(hash);
+    }
+
+    private static long versionStep(long hash, String entry) {
+        long h = entry.length();
+        for (int i = 0; i < entry.length(); i++) {
+            h = h * 31 + entry.charAt(i);
+        }
+        return (hash + CardFingerprint.mix(h)) * CardFingerprint.GOLDEN;
+    }
+
+    /**
+     * Returns the seed for the random generator drawing one BingoCard, mixing in
+     * everything that identifies it.
+     *
+     * @param masterSeed  the master seed of the print run
+     * @param setVersion  the version of the BingoSet
+     * @param size        the size of the BingoCard
+     * @param addFreeTile wether the BingoCard has a free BingoTile
+     * @param index       the index of the BingoCard
+     * @return the seed
+     */
+    static long seed(long masterSeed, long setVersion, int size, boolean addFreeTile, long index) {
+        long kind = setVersion + (size << 1 | (addFreeTile ? 1 : 0));
+        long stream = CardFingerprint.mix(masterSeed ^ CardFingerprint.mix(kind));
+        return CardFingerprint.mix(stream + index * CardFingerprint.GOLDEN);
+    }
+}
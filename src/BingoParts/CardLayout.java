@@ -0,0 +1,298 @@
+package BingoParts;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+
+/**
+ * The layout of a BingoCard as a grid of wrapped texts, shared by the console
+ * and the PDF output. Since the texts on BingoCards come from a fixed BingoSet,
+ * the word wrapping of every text is computed once per column width and cached,
+ * as are the longest words and the widths of lines in PDF fonts. Laying out a
+ * BingoCard then mostly consists of cache lookups.
+ *
+ * @author Lucas Schlierf
+ */
+final class CardLayout {
+
+    /**
+     * Upper bound for the number of entries in each cache. A cache that grows
+     * bigger is cleared, which only costs recomputing the layouts.
+     */
+    static final int MAX_CACHED = 1 << 16;
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[ \n]");
+
+    private static final Map<String, Integer> LONGEST_WORDS = new ConcurrentHashMap<>();
+    private static final Map<WrapKey, String[]> WRAPPED = new ConcurrentHashMap<>();
+    private static final Map<PDFont, Map<String, Float>> WIDTHS = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int columnWidth;
+    private final int lineCount;
+    private final String[][] cells;
+
+    private CardLayout(int size, int columnWidth, String[][] cells) {
+        this.size = size;
+        this.columnWidth = columnWidth;
+        this.cells = cells;
+        int lines = 1;
+        for (String[] cell : cells) {
+            lines = Math.max(lines, cell.length);
+        }
+        this.lineCount = lines;
+    }
+
+    /**
+     * Lays out the specified BingoCard.
+     *
+     * @param card      the BingoCard
+     * @param showMarks wether to show an "x" for marked off and an "o" for other
+     *                  BingoTiles in front of their texts
+     * @return the layout
+     */
+    static CardLayout of(BingoCard card, boolean showMarks) {
+        Metrics.Sample sample = Metrics.LAYOUT.start();
+        int size = card.getSize();
+        String[] texts = new String[size * size];
+        char[] prefixes = new char[texts.length];
+        int columnWidth = 0;
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = card.getText(i);
+            if (showMarks && card.getTerm(i) != BingoCard.FREE) {
+                prefixes[i] = card.isMarked(i) ? 'x' : 'o';
+                columnWidth = Math.max(columnWidth, 1);
+            }
+            columnWidth = Math.max(columnWidth, longestWord(texts[i]));
+        }
+        String[][] cells = new String[texts.length][];
+        for (int i = 0; i < texts.length; i++) {
+            cells[i] = wrap(texts[i], prefixes[i], columnWidth);
+        }
+        sample.end();
+        return new CardLayout(size, columnWidth, cells);
+    }
+
+    /**
+     * Lays out the specified texts, where spaces and line breaks both separate
+     * words.
+     *
+     * @param texts the texts, should be a square array
+     * @return the layout
+     */
+    static CardLayout of(String[][] texts) {
+        int size = texts.length;
+        int columnWidth = 0;
+        for (String[] row : texts) {
+            for (String text : row) {
+                columnWidth = Math.max(columnWidth, longestWord(text));
+            }
+        }
+        String[][] cells = new String[size * size][];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                cells[i * size + j] = wrap(texts[i][j], (char) 0, columnWidth);
+            }
+        }
+        return new CardLayout(size, columnWidth, cells);
+    }
+
+    /**
+     * Returns the length of the longest word in the specified text.
+     *
+     * @param text the text
+     * @return the length of the longest word
+     */
+    static int longestWord(String text) {
+        Integer cached = LONGEST_WORDS.get(text);
+        if (cached != null)
+            return cached;
+        int longest = 0;
+        for (String word : WORD_SEPARATOR.split(text)) {
+            longest = Math.max(longest, word.length());
+        }
+        if (LONGEST_WORDS.size() >= MAX_CACHED)
+            LONGEST_WORDS.clear();
+        LONGEST_WORDS.put(text, longest);
+        return longest;
+    }
+
+    /**
+     * Wraps the specified text to the specified width. A word is joined with the
+     * following one if both together are shorter than the width, and each word is
+     * joined at most once, which keeps the look of the existing console output.
+     *
+     * @param text   the text
+     * @param prefix a one character word in front of the text, or {@code 0} for
+     *               none
+     * @param width  the column width
+     * @return the wrapped lines, must not be modified
+     */
+    static String[] wrap(String text, char prefix, int width) {
+        WrapKey key = new WrapKey(text, prefix, width);
+        String[] cached = WRAPPED.get(key);
+        if (cached != null)
+            return cached;
+        String[] words = WORD_SEPARATOR.split(prefix == 0 ? text : prefix + " " + text);
+        for (int k = 0; k < words.length - 1; k++) {
+            if (words[k] == null)
+                continue;
+            if (words[k].length() + words[k + 1].length() < width) {
+                words[k] = words[k] + " " + words[k + 1];
+                words[k + 1] = null;
+            }
+        }
+        List<String> lines = new ArrayList<>(words.length);
+        for (String word : words) {
+            if (word != null)
+                lines.add(word);
+        }
+        String[] wrapped = lines.toArray(new String[0]);
+        if (WRAPPED.size() >= MAX_CACHED)
+            WRAPPED.clear();
+        WRAPPED.put(key, wrapped);
+        return wrapped;
+    }
+
+    /**
+     * Returns the width of the specified String in the specified font at font
+     * size 1, caching the result. Fonts cache glyph widths internally without
+     * synchronization, so measuring is serialized per font.
+     *
+     * @param font the font
+     * @param s    the String
+     * @return the width in PDF units at font size 1
+     * @throws IOException if the font can't measure the String
+     */
+    static float stringWidth(PDFont font, String s) throws IOException {
+        Map<String, Float> widths = WIDTHS.computeIfAbsent(font, f -> new ConcurrentHashMap<>());
+        Float cached = widths.get(s);
+        if (cached != null)
+            return cached;
+        float width;
+        synchronized (font) {
+            width = font.getStringWidth(s) / 1000f;
+        }
+        if (widths.size() >= MAX_CACHED)
+            widths.clear();
+        widths.put(s, width);
+        return width;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the width of every column, in characters.
+     *
+     * @return the column width
+     */
+    int getColumnWidth() {
+        return columnWidth;
+    }
+
+    /**
+     * Returns the number of lines of text in every row of the BingoCard.
+     *
+     * @return the number of lines per row
+     */
+    int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Returns the wrapped lines of the specified cell.
+     *
+     * @param index the index of the cell ({@code y * size + x})
+     * @return the wrapped lines, must not be modified
+     */
+    String[] getCell(int index) {
+        return cells[index];
+    }
+
+    /**
+     * Returns the total width of the formatted BingoCard, in characters.
+     *
+     * @return the width
+     */
+    int getWidth() {
+        return size * (columnWidth + 1) + 1;
+    }
+
+    /**
+     * Returns the total height of the formatted BingoCard, in lines.
+     *
+     * @return the height
+     */
+    int getHeight() {
+        return size * (lineCount + 1) + 1;
+    }
+
+    /**
+     * Returns the width of the formatted BingoCard in the specified font at font
+     * size 1.
+     *
+     * @param font the font
+     * @return the width in PDF units at font size 1
+     * @throws IOException if the font can't measure the BingoCard
+     */
+    float getWidth(PDFont font) throws IOException {
+        StringBuilder top = new StringBuilder(getWidth());
+        ConsoleRenderer.renderLine(this, 0, true, top);
+        return stringWidth(font, top.toString());
+    }
+
+    /**
+     * Formats the BingoCard line by line.
+     *
+     * @param ascii wether to draw the grid with ASCII characters only, as needed
+     *              for the standard PDF fonts
+     * @return the lines of the formatted BingoCard
+     * @throws IOException never, since the lines are built in memory
+     */
+    String[] toLines(boolean ascii) throws IOException {
+        String[] lines = new String[getHeight()];
+        for (int i = 0; i < lines.length; i++) {
+            StringBuilder line = new StringBuilder(getWidth());
+            ConsoleRenderer.renderLine(this, i, ascii, line);
+            lines[i] = line.toString();
+        }
+        return lines;
+    }
+
+    /**
+     * Identifies a wrapped text in the caches, by its text, prefix and column
+     * width.
+     */
+    static final class WrapKey {
+        private final String text;
+        private final char prefix;
+        private final int width;
+
+        WrapKey(String text, char prefix, int width) {
+            this.text = text;
+            this.prefix = prefix;
+            this.width = width;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof WrapKey))
+                return false;
+            WrapKey other = (WrapKey) o;
+            return prefix == other.prefix && width == other.width && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, prefix, width);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package BingoParts;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Checks claims to have a Bingo against the list of called terms, without
+ * marking off anything on the BingoCards. The called terms are kept as a bitset
+ * over the term ids of the TermDictionary, so checking a BingoCard means
+ * intersecting its term ids with that bitset into a mask of marked positions and
+ * comparing the mask with the masks of its lines.
+ * <p>
+ * For BingoCards that have a line, the verifier also finds the call that
+ * completed the first line: every line was completed by the latest call among
+ * its terms, and the first line by the earliest of those. Batches of claims are
+ * checked on all cores.
+ *
+ * @author Lucas Schlierf
+ */
+public final class ClaimVerifier {
+
+    /**
+     * Returned for BingoCards without a line.
+     */
+    public static final int NO_BINGO = -1;
+
+    private final TermDictionary dictionary;
+    private final long[] called;
+    private final int[] callIndex;
+    private final Map<String, Integer> unknownCalls;
+    private final int calls;
+
+    /**
+     * Creates a new ClaimVerifier for BingoCards using the specified
+     * TermDictionary. The TermDictionary isn't changed: called terms that aren't
+     * in it yet aren't on any BingoCard so far, and are only looked up by their
+     * text for terms added later, e.g. by BingoCards created by {@code verify()}
+     * from their ids. A term called twice counts from its first call.
+     *
+     * @param dictionary the TermDictionary of the BingoCards
+     * @param calls      the called terms, in the order they were called
+     */
+    public ClaimVerifier(TermDictionary dictionary, List<String> calls) {
+        this.dictionary = dictionary;
+        this.calls = calls.size();
+        this.unknownCalls = new HashMap<>();
+        // terms added later have higher ids, so they are outside of the arrays
+        int terms = dictionary.size();
+        this.called = new long[LineMasks.wordsFor(terms)];
+        this.callIndex = new int[terms];
+        for (int i = calls.size() - 1; i >= 0; i--) {
+            int id = dictionary.find(calls.get(i));
+            if (id < 0 || id >= terms) {
+                unknownCalls.put(calls.get(i), i);
+            } else {
+                LineMasks.set(called, id);
+                callIndex[id] = i;
+            }
+        }
+    }
+
+    /**
+     * Creates a new ClaimVerifier for BingoCards created from the specified
+     * BingoSet, e.g. by {@code BingoCard.createFromSet()} or a CardGenerator from
+     * {@code CardGenerator.forSet()}.
+     *
+     * @param setName the name of the BingoSet
+     * @param calls   the called terms, in the order they were called
+     * @return the ClaimVerifier
+     * @throws IOException if an IOException occurs while fetching the BingoSet
+     */
+    public static ClaimVerifier forSet(String setName, List<String> calls) throws IOException {
+        return new ClaimVerifier(BingoSets.getDictionary(setName), calls);
+    }
+
+    /**
+     * Returns the number of calls this ClaimVerifier checks against.
+     *
+     * @return the number of calls
+     */
+    public int getCalls() {
+        return calls;
+    }
+
+    /**
+     * Checks wether the specified BingoCard has a line, considering only the
+     * called terms and free positions.
+     *
+     * @param card the BingoCard
+     * @return {@code true} if the BingoCard has a Bingo
+     * @throws IllegalArgumentException if the BingoCard uses a different
+     *                                  TermDictionary
+     */
+    public boolean hasBingo(BingoCard card) {
+        return completedAt(card) != NO_BINGO;
+    }
+
+    /**
+     * Finds the call that gave the specified BingoCard its first line.
+     *
+     * @param card the BingoCard
+     * @return the index of that call in the list of calls, from 0, or
+     *         {@code NO_BINGO} if the BingoCard has no line
+     * @throws IllegalArgumentException if the BingoCard uses a different
+     *                                  TermDictionary
+     */
+    public int completedAt(BingoCard card) {
+        if (card.getDictionary() != dictionary)
+            throw new IllegalArgumentException("The BingoCard uses a different TermDictionary");
+        int size = card.getSize();
+        LineMasks lines = LineMasks.forSize(size);
+        long[] marks = new long[lines.getWords()];
+        for (int cell = 0; cell < size * size; cell++) {
+            int term = card.getTerm(cell);
+            if (term == BingoCard.FREE || callOf(term) >= 0)
+                LineMasks.set(marks, cell);
+        }
+        if (!lines.anyLineComplete(marks))
+            return NO_BINGO;
+        int first = Integer.MAX_VALUE;
+        for (int line = 0; line < lines.numLines(); line++) {
+            if (lines.isLineComplete(marks, line))
+                first = Math.min(first, lastCall(card, lines.getLine(line)));
+        }
+        return first;
+    }
+
+    /**
+     * Returns the latest call among the terms of a complete line.
+     */
+    private int lastCall(BingoCard card, long[] line) {
+        int last = -1;
+        for (int w = 0; w < line.length; w++) {
+            for (long bits = line[w]; bits != 0; bits &= bits - 1) {
+                int term = card.getTerm(w * 64 + Long.numberOfTrailingZeros(bits));
+                if (term != BingoCard.FREE)
+                    last = Math.max(last, callOf(term));
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Returns the first call of a term, or {@code -1} if it wasn't called.
+     */
+    private int callOf(int term) {
+        if (term < callIndex.length)
+            return LineMasks.get(called, term) ? callIndex[term] : -1;
+        if (unknownCalls.isEmpty())
+            return -1;
+        return unknownCalls.getOrDefault(dictionary.get(term), -1);
+    }
+
+    /**
+     * Checks a batch of claims on all cores.
+     *
+     * @param cards the BingoCards of the claims
+     * @return for every BingoCard the result of {@code completedAt()}
+     * @throws IllegalArgumentException if a BingoCard uses a different
+     *                                  TermDictionary
+     */
+    public int[] verify(List<BingoCard> cards) {
+        int[] results = new int[cards.size()];
+        IntStream.range(0, results.length).parallel().forEach(i -> results[i] = completedAt(cards.get(i)));
+        return results;
+    }
+
+    /**
+     * Checks a batch of claims given by the ids of the BingoCards on all cores,
+     * creating every BingoCard again from its id (see
+     * {@code CardGenerator.card()}).
+     *
+     * @param generator  the CardGenerator the BingoCards were created with, which
+     *                   must use the TermDictionary of this ClaimVerifier
+     * @param masterSeed the master seed of the print run
+     * @param ids        the ids of the BingoCards
+     * @return for every id the result of {@code completedAt()}
+     * @throws IllegalArgumentException if an id doesn't belong to the
+     *                                  CardGenerator
+     */
+    public int[] verify(CardGenerator generator, long masterSeed, long[] ids) {
+        int[] results = new int[ids.length];
+        IntStream.range(0, ids.length).parallel()
+                .forEach(i -> results[i] = completedAt(generator.regenerate(masterSeed, ids[i])));
+        return results;
+    }
+}
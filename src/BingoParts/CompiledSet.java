@@ -0,0 +1,281 @@
+package BingoParts;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * A BingoSet compiled into a binary file that is read through a
+ * MappedByteBuffer, so huge BingoSets don't have to be loaded into the heap.
+ * Accessing any entry is O(1) and doesn't copy the file contents.
+ * <p>
+ * The file consists of a header, an offset table and a UTF-8 blob:
+ *
+ * <pre>
+ * int  magic ("BSET")
+ * int  version
+ * int  count
+ * int  reserved
+ * long checksum (CRC32C of the offset table and the blob)
+ * long blob length
+ * int  offsets[count + 1] (relative to the start of the blob)
+ * byte blob[]
+ * </pre>
+ *
+ * All numbers are big-endian. Since the whole file is mapped at once, compiled
+ * BingoSets are limited to 2 GB.
+ * <p>
+ * Opening a compiled BingoSet only checks its header, so it takes the same time
+ * for any size; the checksum over the whole file is only computed by
+ * {@code verify()}. {@code forSet()} keeps the compiled BingoSets it opened, and
+ * verifies a file it didn't compile itself once, when it first opens it.
+ *
+ * @author Lucas Schlierf
+ */
+public final class CompiledSet implements SetEntries {
+
+    /**
+     * The file extension of compiled BingoSets.
+     */
+    public static final String EXTENSION = ".bset";
+
+    private static final int MAGIC = 0x42534554;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private static final Map<Path, Opened> OPENED = new ConcurrentHashMap<>();
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int blobStart;
+    private final long checksum;
+
+    /**
+     * A compiled BingoSet opened by {@code forSet()}, and the file it was opened
+     * from.
+     */
+    private static final class Opened {
+        private final long size;
+        private final FileTime modified;
+        private final CompiledSet set;
+
+        Opened(BasicFileAttributes file, CompiledSet set) {
+            this.size = file.size();
+            this.modified = file.lastModifiedTime();
+            this.set = set;
+        }
+
+        boolean matches(BasicFileAttributes file) {
+            return size == file.size() && modified.equals(file.lastModifiedTime());
+        }
+    }
+
+    private CompiledSet(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a compiled BingoSet");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported compiled BingoSet version " + buffer.getInt(4));
+        this.count = buffer.getInt(8);
+        this.checksum = buffer.getLong(16);
+        this.blobStart = HEADER_SIZE + 4 * (count + 1);
+        if (count < 0 || (long) blobStart + buffer.getLong(24) != buffer.capacity())
+            throw new IOException("Compiled BingoSet is truncated");
+    }
+
+    /**
+     * Opens a compiled BingoSet, checking only its header. Use {@code verify()} to
+     * check the whole file.
+     *
+     * @param path the path of the compiled BingoSet
+     * @return the compiled BingoSet
+     * @throws IOException if the file can't be read, or doesn't have the header
+     *                     of a compiled BingoSet
+     */
+    public static CompiledSet open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new CompiledSet(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Verifies the checksum of the offset table and the entries, reading the
+     * whole file.
+     *
+     * @throws IOException if the checksum doesn't match
+     */
+    public void verify() throws IOException {
+        if (computeChecksum() != checksum)
+            throw new IOException("Compiled BingoSet is damaged, its checksum doesn't match");
+    }
+
+    /**
+     * Returns the compiled version of the specified BingoSet, compiling it first
+     * if there is no compiled version yet, or if the BingoSet changed since. The
+     * compiled BingoSet is opened once and shared by all callers until the file
+     * changes. A file that wasn't compiled by this method is verified when it is
+     * opened.
+     *
+     * @param setName the name of the BingoSet
+     * @return the compiled BingoSet, or {@code null} if there is no such BingoSet
+     * @throws IOException if an IO exception occurs while compiling or opening, or
+     *                     the compiled BingoSet is damaged
+     */
+    public static CompiledSet forSet(String setName) throws IOException {
+        Path source = SetRegistry.get().getPath(setName);
+        if (source == null)
+            return null;
+        Path target = compiledPath(source);
+        boolean compiled = false;
+        if (!Files.exists(target)
+                || Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(source)) < 0) {
+            compile(source, target);
+            compiled = true;
+        }
+        BasicFileAttributes file = Files.readAttributes(target, BasicFileAttributes.class);
+        Opened opened = OPENED.get(target);
+        if (opened != null && opened.matches(file))
+            return opened.set;
+        CompiledSet set = open(target);
+        if (!compiled)
+            set.verify();
+        OPENED.put(target, new Opened(file, set));
+        return set;
+    }
+
+    /**
+     * Returns the path the compiled version of a BingoSet is stored at.
+     *
+     * @param source the path of the BingoSet
+     * @return the path of the compiled BingoSet
+     */
+    static Path compiledPath(Path source) {
+        return source.resolveSibling(SetRegistry.nameOf(source.getFileName().toString()) + EXTENSION);
+    }
+
+    /**
+     * Compiles a BingoSet text file, reading it line by line. Only the offset
+     * table is kept in memory, the entries are streamed into a temporary file.
+     * Temporary files start with a dot, so they are never mistaken for BingoSets.
+     *
+     * @param source the BingoSet text file
+     * @param target where to store the compiled BingoSet
+     * @throws IOException if an IO exception occurs
+     */
+    public static void compile(Path source, Path target) throws IOException {
+        Path blob = Files.createTempFile(target.getParent(), ".blob", ".tmp");
+        Path temp = Files.createTempFile(target.getParent(), ".bset", ".tmp");
+        try {
+            int[] offsets = new int[1024];
+            int count = 0;
+            long length = 0;
+            try (BufferedReader br = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+                    FileChannel out = FileChannel.open(blob, StandardOpenOption.WRITE)) {
+                ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+                String line = br.readLine();
+                if (WeightedSet.HEADER.equals(line))
+                    throw new IOException("Weighted BingoSets can't be compiled, their weights would be lost");
+                while (line != null) {
+                    byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+                    if (length + bytes.length > Integer.MAX_VALUE - HEADER_SIZE)
+                        throw new IOException("BingoSet is too big to be compiled");
+                    if (count + 1 == offsets.length)
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    offsets[count++] = (int) length;
+                    length += bytes.length;
+                    int written = 0;
+                    while (written < bytes.length) {
+                        if (!chunk.hasRemaining())
+                            flush(chunk, out);
+                        int n = Math.min(chunk.remaining(), bytes.length - written);
+                        chunk.put(bytes, written, n);
+                        written += n;
+                    }
+                    line = br.readLine();
+                }
+                flush(chunk, out);
+                offsets[count] = (int) length;
+            }
+            ByteBuffer table = ByteBuffer.allocate(4 * (count + 1)).order(ByteOrder.BIG_ENDIAN);
+            table.asIntBuffer().put(offsets, 0, count + 1);
+            CRC32C checksum = new CRC32C();
+            checksum.update(table.duplicate());
+            try (FileChannel in = FileChannel.open(blob, StandardOpenOption.READ)) {
+                ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+                while (in.read(chunk) > 0) {
+                    chunk.flip();
+                    checksum.update(chunk);
+                    chunk.clear();
+                }
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0).putLong(checksum.getValue()).putLong(length);
+            header.flip();
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE);
+                    FileChannel in = FileChannel.open(blob, StandardOpenOption.READ)) {
+                while (header.hasRemaining())
+                    out.write(header);
+                while (table.hasRemaining())
+                    out.write(table);
+                long position = 0;
+                while (position < length)
+                    position += in.transferTo(position, length - position, out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(blob);
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void flush(ByteBuffer chunk, FileChannel out) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining())
+            out.write(chunk);
+        chunk.clear();
+    }
+
+    private long computeChecksum() {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(HEADER_SIZE));
+        return crc.getValue();
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the UTF-8 bytes of the specified entry, without copying them.
+     *
+     * @param index the index of the entry, from 0 (inclusive), to size (exclusive)
+     * @return a read-only ByteBuffer holding exactly the entry
+     */
+    public ByteBuffer getBytes(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException(index);
+        int start = buffer.getInt(HEADER_SIZE + 4 * index);
+        int end = buffer.getInt(HEADER_SIZE + 4 * (index + 1));
+        return buffer.slice(blobStart + start, end - start).asReadOnlyBuffer();
+    }
+
+    @Override
+    public String get(int index) {
+        return StandardCharsets.UTF_8.decode(getBytes(index)).toString();
+    }
+}
@@ -0,0 +1,219 @@
+package BingoParts;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes BingoCards as text grids into an Appendable, in one pass over the
+ * cached CardLayout. Border lines are precomputed per size and column width,
+ * padding is appended from a shared run of spaces, so rendering doesn't create
+ * any intermediate Strings per cell or line.
+ *
+ * @author Lucas Schlierf
+ */
+public final class ConsoleRenderer {
+
+    private static final char[] BOX = { '┌', '┬', '┐', '├', '┼', '┤', '└', '┴', '┘', '─', '│' };
+    private static final char[] ASCII = { '+', '+', '+', '+', '+', '+', '+', '+', '+', '-', '|' };
+
+    private static final Map<Long, String[]> BORDERS = new ConcurrentHashMap<>();
+
+    private static final int MAX_BUFFER = 1 << 20;
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(StringBuilder::new);
+
+    private static volatile String spaces = " ".repeat(64);
+
+    /**
+     * This class only has static Methods, so it shouldn't be instanciated.
+     */
+    private ConsoleRenderer() {
+    }
+
+    /**
+     * Writes the BingoCard, leaving out whether the BingoTiles have been marked
+     * off. This is what {@code BingoCard.toConsolePrint()} returns.
+     *
+     * @param card the BingoCard
+     * @param out  where to write the BingoCard to
+     * @throws IOException if writing fails
+     */
+    public static void print(BingoCard card, Appendable out) throws IOException {
+        write(CardLayout.of(card, false), out);
+    }
+
+    /**
+     * Writes the BingoCard, also displaying which BingoTiles have been marked off.
+     * This is what {@code BingoCard.toConsoleOutput()} returns.
+     *
+     * @param card the BingoCard
+     * @param out  where to write the BingoCard to
+     * @throws IOException if writing fails
+     */
+    public static void output(BingoCard card, Appendable out) throws IOException {
+        write(CardLayout.of(card, true), out);
+    }
+
+    /**
+     * Writes all BingoCards one after another, separated by empty lines, leaving
+     * out whether the BingoTiles have been marked off. Suited for exporting large
+     * batches, e.g. {@code printAll(generator.generate(n)::iterator, writer)}.
+     *
+     * @param cards the BingoCards
+     * @param out   where to write the BingoCards to
+     * @throws IOException if writing fails
+     */
+    public static void printAll(Iterable<BingoCard> cards, Appendable out) throws IOException {
+        for (BingoCard card : cards) {
+            print(card, out);
+            out.append("\n\n");
+        }
+    }
+
+    /**
+     * Formats the BingoCard into a String.
+     *
+     * @param card      the BingoCard
+     * @param showMarks wether to display which BingoTiles have been marked off
+     * @return the formatted BingoCard
+     */
+    static String toString(BingoCard card, boolean showMarks) {
+        return toString(CardLayout.of(card, showMarks));
+    }
+
+    /**
+     * Formats the layout into a String.
+     *
+     * @param layout the layout
+     * @return the formatted BingoCard
+     */
+    static String toString(CardLayout layout) {
+        StringBuilder result = new StringBuilder(layout.getHeight() * (layout.getWidth() + 1));
+        try {
+            render(layout, false, result);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Writes the layout to the Appendable. Writers synchronize every single call,
+     * so unless the target is a StringBuilder anyway, the BingoCard is rendered
+     * into a reused per-thread buffer first and handed over in one call.
+     */
+    private static void write(CardLayout layout, Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            render(layout, false, out);
+            return;
+        }
+        StringBuilder buffer = BUFFERS.get();
+        buffer.setLength(0);
+        render(layout, false, buffer);
+        out.append(buffer);
+        if (buffer.capacity() > MAX_BUFFER)
+            BUFFERS.remove();
+    }
+
+    /**
+     * Writes the layout line by line, with the lines separated by {@code \n}.
+     *
+     * @param layout the layout
+     * @param ascii  wether to draw the grid with ASCII characters only
+     * @param out    where to write the BingoCard to
+     * @throws IOException if writing fails
+     */
+    static void render(CardLayout layout, boolean ascii, Appendable out) throws IOException {
+        int height = layout.getHeight();
+        for (int line = 0; line < height; line++) {
+            if (line > 0)
+                out.append('\n');
+            renderLine(layout, line, ascii, out);
+        }
+    }
+
+    /**
+     * Writes a single line of the layout, without a line break.
+     *
+     * @param layout the layout
+     * @param line   the index of the line, from 0 (inclusive), to the height of the
+     *               layout (exclusive)
+     * @param ascii  wether to draw the grid with ASCII characters only
+     * @param out    where to write the line to
+     * @throws IOException if writing fails
+     */
+    static void renderLine(CardLayout layout, int line, boolean ascii, Appendable out) throws IOException {
+        String[] borders = borders(layout.getSize(), layout.getColumnWidth(), ascii);
+        if (line == 0) {
+            out.append(borders[0]);
+            return;
+        }
+        if (line == layout.getHeight() - 1) {
+            out.append(borders[2]);
+            return;
+        }
+        int lineCount = layout.getLineCount();
+        int row = (line - 1) / (lineCount + 1);
+        int textLine = (line - 1) % (lineCount + 1);
+        if (textLine == lineCount) {
+            out.append(borders[1]);
+            return;
+        }
+        char vertical = (ascii ? ASCII : BOX)[10];
+        int size = layout.getSize();
+        int width = layout.getColumnWidth();
+        String padding = spaces(width);
+        out.append(vertical);
+        for (int k = 0; k < size; k++) {
+            String[] cell = layout.getCell(row * size + k);
+            String text = textLine < cell.length ? cell[textLine] : " ";
+            out.append(text);
+            if (text.length() < width)
+                out.append(padding, 0, width - text.length());
+            out.append(vertical);
+        }
+    }
+
+    /**
+     * Returns the top, middle and bottom border lines for the specified size and
+     * column width.
+     *
+     * @param size  the size of the BingoCard
+     * @param width the column width
+     * @param ascii wether to use ASCII characters only
+     * @return the border lines, must not be modified
+     */
+    static String[] borders(int size, int width, boolean ascii) {
+        long key = ((long) size << 32 | width) << 1 | (ascii ? 1 : 0);
+        String[] borders = BORDERS.get(key);
+        if (borders == null) {
+            char[] chars = ascii ? ASCII : BOX;
+            borders = new String[3];
+            for (int b = 0; b < 3; b++) {
+                StringBuilder line = new StringBuilder(size * (width + 1) + 1);
+                line.append(chars[3 * b]);
+                for (int k = 0; k < size; k++) {
+                    for (int j = 0; j < width; j++) {
+                        line.append(chars[9]);
+                    }
+                    line.append(k + 1 < size ? chars[3 * b + 1] : chars[3 * b + 2]);
+                }
+                borders[b] = line.toString();
+            }
+            if (BORDERS.size() >= CardLayout.MAX_CACHED)
+                BORDERS.clear();
+            BORDERS.put(key, borders);
+        }
+        return borders;
+    }
+
+    private static String spaces(int width) {
+        String current = spaces;
+        if (current.length() < width) {
+            current = " ".repeat(Math.max(width, current.length() * 2));
+            spaces = current;
+        }
+        return current;
+    }
+}
@@ -6,12 +6,23 @@ package BingoParts;
  * @author Lucas Schlierf
  */
 public class FreeBingoTile extends BingoTile {
+    static final String TEXT = "FREE SPACE";
 
     /**
      * Creates a BingoField that displays the text "FREE" and is always marked off.
      */
     public FreeBingoTile() {
-        super("FREE SPACE");
+        super(TEXT);
+    }
+
+    /**
+     * Creates a view of the free position on a BingoCard.
+     * 
+     * @param card  the BingoCard
+     * @param index the index of the position ({@code y * size + x})
+     */
+    FreeBingoTile(BingoCard card, int index) {
+        super(card, index);
     }
 
     @Override
@@ -21,6 +32,6 @@ public class FreeBingoTile extends BingoTile {
 
     @Override
     public String toString() {
-        return "FREE SPACE";
+        return TEXT;
     }
 }
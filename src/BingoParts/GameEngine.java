@@ -0,0 +1,389 @@
+package BingoParts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Runs a game of Bingo on many BingoCards at once, driven by a caller who
+ * announces one term after another. The BingoCards are indexed by term: for
+ * every term the engine keeps the postings, i.e. the BingoCards and positions
+ * it appears on, packed into longs. Calling a term only visits its postings, so
+ * the work per call, including finding the new winners, is proportional to the
+ * number of BingoCards containing the term, not to the number of BingoCards in
+ * the game.
+ * <p>
+ * All BingoCards in a game must share one TermDictionary, e.g. by coming from
+ * the same CardGenerator or the same version of a BingoSet, and must not be
+ * changed with {@code setField()} after they have been added.
+ *
+ * @author Lucas Schlierf
+ */
+public final class GameEngine {
+
+    private static final int[] NO_WINNERS = new int[0];
+
+    private final List<BingoCard> cards;
+    private final BitSet winners;
+    private final BitSet called;
+    private final List<String> calls;
+    private final BitSet claims;
+    private TermDictionary dictionary;
+    private GameJournal journal;
+    private long[][] postings;
+    private int[] postingCounts;
+
+    /**
+     * Creates a new GameEngine without any BingoCards.
+     */
+    public GameEngine() {
+        this.cards = new ArrayList<>();
+        this.winners = new BitSet();
+        this.called = new BitSet();
+        this.calls = new ArrayList<>();
+        this.claims = new BitSet();
+        this.postings = new long[16][];
+        this.postingCounts = new int[16];
+    }
+
+    /**
+     * Adds a BingoCard to the game. Terms that have already been called are
+     * marked off on it right away.
+     *
+     * @param card the BingoCard
+     * @return the number of the BingoCard in this game, counting from 0
+     * @throws IllegalArgumentException if the BingoCard doesn't use the same
+     *                                  TermDictionary as the other BingoCards
+     */
+    public int addCard(BingoCard card) {
+        int number;
+        long position;
+        GameJournal log;
+        synchronized (this) {
+            number = add(card);
+            log = journal;
+            position = log == null ? -1 : log.cardIssued(card);
+        }
+        awaitDurable(log, position);
+        return number;
+    }
+
+    private int add(BingoCard card) {
+        if (dictionary == null) {
+            dictionary = card.getDictionary();
+            for (String term : calls) {
+                int id = dictionary.find(term);
+                if (id >= 0)
+                    called.set(id);
+            }
+        } else if (dictionary != card.getDictionary()) {
+            throw new IllegalArgumentException("All BingoCards of a game must come from the same BingoSet");
+        }
+        int number = cards.size();
+        cards.add(card);
+        int size = card.getSize();
+        boolean won = false;
+        for (int cell = 0; cell < size * size; cell++) {
+            int term = card.getTerm(cell);
+            if (term == BingoCard.FREE)
+                continue;
+            addPosting(term, (long) number << 32 | cell);
+            if (called.get(term))
+                won |= card.markOff(cell);
+        }
+        if (won || card.isCompleted())
+            winners.set(number);
+        return number;
+    }
+
+    /**
+     * Calls a term, marking it off on every BingoCard containing it. Terms called
+     * before the first BingoCard is added are marked off when it is added.
+     *
+     * @param term the text of the term
+     * @return the numbers of the BingoCards that completed their first line with
+     *         this call, in ascending order, empty if the term isn't on any
+     *         BingoCard or has already been called
+     */
+    public int[] call(String term) {
+        int[] won;
+        long position = -1;
+        GameJournal log;
+        synchronized (this) {
+            int before = calls.size();
+            if (dictionary == null) {
+                if (!calls.contains(term))
+                    calls.add(term);
+                won = NO_WINNERS;
+            } else {
+                won = callTerm(dictionary.find(term));
+            }
+            log = journal;
+            if (log != null && calls.size() > before)
+                position = log.termCalled(term);
+        }
+        awaitDurable(log, position);
+        return won;
+    }
+
+    /**
+     * Calls a term by its id in the TermDictionary of the BingoCards.
+     *
+     * @param id the term id, or {@code -1} for a term that isn't in the
+     *           TermDictionary
+     * @return the numbers of the BingoCards that completed their first line with
+     *         this call, in ascending order
+     */
+    int[] call(int id) {
+        int[] won;
+        long position = -1;
+        GameJournal log;
+        synchronized (this) {
+            int before = calls.size();
+            won = callTerm(id);
+            log = journal;
+            if (log != null && calls.size() > before)
+                position = log.termCalled(dictionary.get(id));
+        }
+        awaitDurable(log, position);
+        return won;
+    }
+
+    /**
+     * Calls a term by its id and marks it off, leaving journaling to the caller.
+     * The term is added to the calls even if it isn't on any BingoCard, so the
+     * caller has to journal every call that adds to them.
+     */
+    private int[] callTerm(int id) {
+        if (id < 0 || called.get(id))
+            return NO_WINNERS;
+        called.set(id);
+        calls.add(dictionary.get(id));
+        if (id >= postings.length || postingCounts[id] == 0)
+            return NO_WINNERS;
+        long[] list = postings[id];
+        int count = postingCounts[id];
+        int[] won = new int[count];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int number = (int) (list[i] >>> 32);
+            if (cards.get(number).markOff((int) list[i]) && !winners.get(number)) {
+                winners.set(number);
+                won[n++] = number;
+            }
+        }
+        return n == 0 ? NO_WINNERS : Arrays.copyOf(won, n);
+    }
+
+    /**
+     * Marks off a BingoTile on the specified BingoCard by hand, e.g. when the
+     * players mark their BingoCards themselves.
+     *
+     * @param number the number of the BingoCard
+     * @param x      the x coordinate, from 0 (inclusive), to size (exclusive).
+     * @param y      the y coordinate, from 0 (inclusive), to size (exclusive).
+     * @return {@code true} if the BingoCard completed its first line with this
+     *         mark
+     */
+    public boolean markOff(int number, int x, int y) {
+        boolean won;
+        long position;
+        GameJournal log;
+        synchronized (this) {
+            BingoCard card = cards.get(number);
+            if (x < 0 || y < 0 || x >= card.getSize() || y >= card.getSize())
+                throw new ArrayIndexOutOfBoundsException("Position " + x + ", " + y + " is outside of the BingoCard");
+            int cell = y * card.getSize() + x;
+            won = mark(number, cell);
+            log = journal;
+            position = log == null ? -1 : log.tileMarked(number, cell);
+        }
+        awaitDurable(log, position);
+        return won;
+    }
+
+    /**
+     * Marks off a position on the specified BingoCard.
+     *
+     * @param number the number of the BingoCard
+     * @param cell   the index of the position ({@code y * size + x})
+     * @return {@code true} if the BingoCard completed its first line with this
+     *         mark
+     */
+    synchronized boolean mark(int number, int cell) {
+        if (cards.get(number).markOff(cell) && !winners.get(number)) {
+            winners.set(number);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks a claim to have a Bingo with the specified BingoCard and records it.
+     *
+     * @param number the number of the BingoCard
+     * @return {@code true} if the BingoCard has completed a line, so the claim is
+     *         valid
+     */
+    public boolean claim(int number) {
+        boolean valid;
+        long position;
+        GameJournal log;
+        synchronized (this) {
+            valid = winners.get(number);
+            if (valid)
+                claims.set(number);
+            log = journal;
+            position = log == null ? -1 : log.claimMade(number, valid);
+        }
+        awaitDurable(log, position);
+        return valid;
+    }
+
+    /**
+     * Records a claim without checking it again, when replaying a GameJournal.
+     */
+    synchronized void restoreClaim(int number, boolean valid) {
+        if (valid)
+            claims.set(number);
+    }
+
+    /**
+     * Returns the numbers of all BingoCards that have claimed their Bingo.
+     *
+     * @return the numbers of the BingoCards with valid claims, in ascending order
+     */
+    public synchronized int[] getClaims() {
+        return claims.stream().toArray();
+    }
+
+    /**
+     * Journals all further changes to the specified GameJournal.
+     */
+    synchronized void setJournal(GameJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the TermDictionary of the BingoCards, or {@code null} if there are
+     * no BingoCards yet.
+     */
+    synchronized TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    private static void awaitDurable(GameJournal log, long position) {
+        if (log != null && position >= 0)
+            log.await(position);
+    }
+
+    /**
+     * Checks wether the term is on any of the BingoCards in the game.
+     *
+     * @param term the text of the term
+     * @return {@code true} if at least one BingoCard contains the term
+     */
+    public synchronized boolean isOnAnyCard(String term) {
+        int id = dictionary == null ? -1 : dictionary.find(term);
+        return id >= 0 && id < postings.length && postingCounts[id] > 0;
+    }
+
+    /**
+     * Checks wether the term has already been called.
+     *
+     * @param term the text of the term
+     * @return {@code true} if the term has been called
+     */
+    public synchronized boolean isCalled(String term) {
+        if (dictionary == null)
+            return calls.contains(term);
+        int id = dictionary.find(term);
+        return id >= 0 && called.get(id);
+    }
+
+    /**
+     * Returns all terms called so far, in the order they were called. Once there
+     * are BingoCards in the game, only terms of their BingoSet are recorded.
+     *
+     * @return a copy of the called terms
+     */
+    public synchronized List<String> getCalls() {
+        return new ArrayList<>(calls);
+    }
+
+    /**
+     * Returns the specified BingoCard.
+     *
+     * @param number the number of the BingoCard, as returned by {@code addCard()}
+     * @return the BingoCard
+     */
+    public synchronized BingoCard getCard(int number) {
+        return cards.get(number);
+    }
+
+    /**
+     * Returns how many BingoCards are in the game.
+     *
+     * @return the number of BingoCards
+     */
+    public synchronized int getCardCount() {
+        return cards.size();
+    }
+
+    /**
+     * Checks wether the specified BingoCard has completed a line.
+     *
+     * @param number the number of the BingoCard
+     * @return {@code true} if the BingoCard has won
+     */
+    public synchronized boolean hasWon(int number) {
+        return winners.get(number);
+    }
+
+    /**
+     * Returns the numbers of all BingoCards that have completed a line.
+     *
+     * @return the numbers of the winning BingoCards, in ascending order
+     */
+    public synchronized int[] getWinners() {
+        return winners.stream().toArray();
+    }
+
+    /**
+     * Removes all BingoCards and calls, so the GameEngine can be reused for
+     * another game without allocating its index again. Only the postings of the
+     * removed BingoCards are touched.
+     */
+    synchronized void reset() {
+        for (BingoCard card : cards) {
+            int size = card.getSize();
+            for (int cell = 0; cell < size * size; cell++) {
+                int term = card.getTerm(cell);
+                if (term != BingoCard.FREE)
+                    postingCounts[term] = 0;
+            }
+        }
+        cards.clear();
+        winners.clear();
+        called.clear();
+        calls.clear();
+        claims.clear();
+    }
+
+    private void addPosting(int term, long posting) {
+        if (term >= postings.length) {
+            int length = Math.max(term + 1, postings.length * 2);
+            postings = Arrays.copyOf(postings, length);
+            postingCounts = Arrays.copyOf(postingCounts, length);
+        }
+        long[] list = postings[term];
+        int count = postingCounts[term];
+        if (list == null)
+            list = postings[term] = new long[4];
+        else if (count == list.length)
+            list = postings[term] = Arrays.copyOf(list, count * 2);
+        list[count] = posting;
+        postingCounts[term] = count + 1;
+    }
+}
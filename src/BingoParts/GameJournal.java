@@ -0,0 +1,620 @@
+package BingoParts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps the state of a GameEngine on disk, so a game survives a crash. Every
+ * change is appended as a small event to a memory-mapped journal file: BingoCard
+ * issued, term called, BingoTile marked off and claim made. Appending only
+ * copies the event into the map; making it durable is left to a flusher
+ * thread, which forces everything appended so far to disk at once, so many
+ * events waiting for durability at the same time share one fsync (group
+ * commit). Events nobody waits for are forced within {@code FLUSH_INTERVAL}.
+ * <p>
+ * From time to time the whole game is written to a compact GameSnapshot and the
+ * journal starts a new file, after which the older files are deleted. A restart
+ * loads the latest snapshot and replays the journal written after it, so
+ * recovering a game takes time proportional to its size plus the events since
+ * the last snapshot, not to its whole history. Snapshots are written to a
+ * temporary file and moved into place, so a damaged snapshot isn't a torn
+ * write; such a game can't be opened, and the snapshot is left untouched.
+ * <p>
+ * A journal file starts with a header of the magic number "BJRN", the format
+ * version and its sequence number. Every event is stored as its length, a
+ * CRC32C checksum, its type and its data. Events never span the 16 MB chunks the
+ * file is mapped in; a length of {@code -1} skips to the next chunk, a length of
+ * {@code 0} ends the journal, and an event with a wrong checksum, which was torn
+ * by a crash, ends it as well.
+ *
+ * @author Lucas Schlierf
+ */
+public final class GameJournal implements Closeable {
+
+    /**
+     * The size of the parts the journal files are mapped in.
+     */
+    static final int CHUNK_SIZE = 1 << 24;
+
+    /**
+     * How long events may stay in memory at most before the flusher thread forces
+     * them to disk, in milliseconds.
+     */
+    static final long FLUSH_INTERVAL = 10;
+
+    private static final int MAGIC = 0x424A524E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SKIP = -1;
+
+    private static final byte TERM = 1;
+    private static final byte CARD = 2;
+    private static final byte CALL = 3;
+    private static final byte MARK = 4;
+    private static final byte CLAIM = 5;
+
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+    private final GameEngine engine;
+    private final Object snapshotLock;
+    private final Object flushLock;
+    private final Thread flusher;
+    private final CRC32C crc;
+    private final AtomicReference<IOException> failure;
+    private ScheduledExecutorService snapshots;
+    private volatile boolean synchronous;
+
+    // the file currently appended to, guarded by this
+    private FileChannel channel;
+    private long sequence;
+    private MappedByteBuffer chunk;
+    private long chunkOffset;
+    private long chunkStart;
+    private BitSet journaledTerms;
+    private long written;
+
+    // guarded by flushLock
+    private long requested;
+    private volatile long flushed;
+    private boolean closed;
+
+    private GameJournal(Path directory, GameEngine engine) {
+        this.directory = directory;
+        this.engine = engine;
+        this.snapshotLock = new Object();
+        this.flushLock = new Object();
+        this.crc = new CRC32C();
+        this.failure = new AtomicReference<>();
+        this.journaledTerms = new BitSet();
+        this.synchronous = true;
+        this.flusher = new Thread(this::flushLoop, "GameJournal-flusher");
+        flusher.setDaemon(true);
+    }
+
+    /**
+     * Opens the game stored in the specified directory, or starts a new one if
+     * there is none. The BingoCards of a recovered game use the TermDictionary of
+     * the specified BingoSet, so new BingoCards from that BingoSet can join it.
+     *
+     * @param directory the directory of the game
+     * @param setName   the name of the BingoSet the game is played with
+     * @return the GameJournal, whose GameEngine holds the recovered game
+     * @throws IOException if the directory can't be read or written, or the latest
+     *                     snapshot is damaged
+     */
+    public static GameJournal open(Path directory, String setName) throws IOException {
+        return open(directory, BingoSets.getDictionary(setName));
+    }
+
+    /**
+     * Opens the game stored in the specified directory, or starts a new one if
+     * there is none.
+     *
+     * @param directory  the directory of the game
+     * @param dictionary the TermDictionary to create the recovered BingoCards with
+     * @return the GameJournal, whose GameEngine holds the recovered game
+     * @throws IOException if the directory can't be read or written, or the latest
+     *                     snapshot is damaged
+     */
+    static GameJournal open(Path directory, TermDictionary dictionary) throws IOException {
+        Files.createDirectories(directory);
+        GameEngine engine = new GameEngine();
+        List<Long> snapshotSequences = sequences(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        List<Long> journalSequences = sequences(directory, JOURNAL_PREFIX, JOURNAL_SUFFIX);
+        long from = journalSequences.isEmpty() ? 0 : journalSequences.get(0);
+        if (!snapshotSequences.isEmpty()) {
+            // the files before the latest snapshot are gone, so it has to be read
+            // or the game can't be recovered at all
+            GameSnapshot snapshot = GameSnapshot
+                    .read(directory.resolve(snapshotName(snapshotSequences.get(snapshotSequences.size() - 1))));
+            snapshot.restore(engine, dictionary);
+            from = snapshot.getSequence();
+        }
+        long last = from - 1;
+        for (long journalSequence : journalSequences) {
+            if (journalSequence >= from) {
+                replay(directory.resolve(journalName(journalSequence)), engine, dictionary);
+                last = journalSequence;
+            }
+        }
+        if (!snapshotSequences.isEmpty())
+            last = Math.max(last, snapshotSequences.get(snapshotSequences.size() - 1));
+        GameJournal journal = new GameJournal(directory, engine);
+        journal.sequence = last;
+        journal.flusher.start();
+        journal.snapshot();
+        engine.setJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Deletes the game stored in the specified directory.
+     *
+     * @param directory the directory of the game
+     * @throws IOException if the files can't be deleted
+     */
+    public static void delete(Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return;
+        for (long s : sequences(directory, JOURNAL_PREFIX, JOURNAL_SUFFIX)) {
+            Files.deleteIfExists(directory.resolve(journalName(s)));
+        }
+        for (long s : sequences(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            Files.deleteIfExists(directory.resolve(snapshotName(s)));
+        }
+    }
+
+    /**
+     * Returns the GameEngine running the game. All its changes are journaled.
+     *
+     * @return the GameEngine
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Writes a snapshot of the whole game and continues the journal in a new
+     * file, deleting the files that are no longer needed afterwards. The game is
+     * only blocked while its state is copied, not while the snapshot is written.
+     *
+     * @throws IOException if the snapshot can't be written, or a periodic snapshot
+     *                     failed since the last call
+     */
+    public void snapshot() throws IOException {
+        rethrowFailure();
+        writeSnapshot();
+    }
+
+    private void writeSnapshot() throws IOException {
+        synchronized (snapshotLock) {
+            GameSnapshot state;
+            synchronized (engine) {
+                synchronized (this) {
+                    roll();
+                    state = GameSnapshot.capture(engine, sequence);
+                }
+            }
+            state.write(directory.resolve(snapshotName(state.getSequence())));
+            for (long s : sequences(directory, JOURNAL_PREFIX, JOURNAL_SUFFIX)) {
+                if (s < state.getSequence())
+                    Files.deleteIfExists(directory.resolve(journalName(s)));
+            }
+            for (long s : sequences(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                if (s < state.getSequence())
+                    Files.deleteIfExists(directory.resolve(snapshotName(s)));
+            }
+        }
+    }
+
+    /**
+     * Sets wether every change to the game waits until it is durable, which is
+     * the default. Otherwise changes only wait for the journal to be written to
+     * memory, and the flusher thread forces them to disk within
+     * {@code FLUSH_INTERVAL}, which suits bulk changes like issuing all
+     * BingoCards before a game.
+     *
+     * @param synchronous wether changes wait until they are durable
+     */
+    public void setSynchronous(boolean synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    /**
+     * Writes a snapshot periodically on a background thread. If a snapshot fails,
+     * the failure is thrown by the next call to {@code snapshot()} or
+     * {@code close()}.
+     *
+     * @param period the time between two snapshots
+     * @param unit   the unit of the period
+     */
+    public synchronized void startSnapshots(long period, TimeUnit unit) {
+        if (snapshots != null)
+            snapshots.shutdown();
+        snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GameJournal-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshots.scheduleWithFixedDelay(() -> {
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                if (!failure.compareAndSet(null, e))
+                    failure.get().addSuppressed(e);
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Makes everything journaled so far durable and closes the journal. The
+     * GameEngine keeps running, but isn't journaled anymore.
+     *
+     * @throws IOException if closing the file fails, or a periodic snapshot failed
+     *                     since the last call to {@code snapshot()}
+     */
+    @Override
+    public void close() throws IOException {
+        engine.setJournal(null);
+        ScheduledExecutorService scheduled;
+        synchronized (this) {
+            scheduled = snapshots;
+            snapshots = null;
+        }
+        if (scheduled != null)
+            scheduled.shutdownNow();
+        synchronized (this) {
+            if (chunk != null)
+                chunk.force();
+            synchronized (flushLock) {
+                flushed = written;
+                closed = true;
+                flushLock.notifyAll();
+            }
+            if (channel != null)
+                channel.close();
+            chunk = null;
+            channel = null;
+        }
+        rethrowFailure();
+    }
+
+    /**
+     * Throws the failure of a periodic snapshot, if there was one since the last
+     * time it was thrown.
+     */
+    private void rethrowFailure() throws IOException {
+        IOException e = failure.getAndSet(null);
+        if (e != null)
+            throw e;
+    }
+
+    /**
+     * Journals a new BingoCard, along with the texts of its terms that haven't
+     * been journaled in this file yet.
+     *
+     * @return the position the event ends at
+     */
+    synchronized long cardIssued(BingoCard card) {
+        int cells = card.getSize() * card.getSize();
+        for (int cell = 0; cell < cells; cell++) {
+            int term = card.getTerm(cell);
+            if (term != BingoCard.FREE && !journaledTerms.get(term)) {
+                byte[] text = card.getDictionary().get(term).getBytes(StandardCharsets.UTF_8);
+                ByteBuffer event = begin(TERM, 8 + text.length);
+                event.putInt(term).putInt(text.length).put(text);
+                end(event);
+                journaledTerms.set(term);
+            }
+        }
+        ByteBuffer event = begin(CARD, 4 + 4 * cells);
+        event.putInt(card.getSize());
+        for (int cell = 0; cell < cells; cell++) {
+            event.putInt(card.getTerm(cell));
+        }
+        return end(event);
+    }
+
+    /**
+     * Journals a called term.
+     *
+     * @return the position the event ends at
+     */
+    synchronized long termCalled(String term) {
+        byte[] text = term.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer event = begin(CALL, 4 + text.length);
+        event.putInt(text.length).put(text);
+        return end(event);
+    }
+
+    /**
+     * Journals a BingoTile marked off by hand.
+     *
+     * @return the position the event ends at
+     */
+    synchronized long tileMarked(int number, int cell) {
+        ByteBuffer event = begin(MARK, 8);
+        event.putInt(number).putInt(cell);
+        return end(event);
+    }
+
+    /**
+     * Journals a claim.
+     *
+     * @return the position the event ends at
+     */
+    synchronized long claimMade(int number, boolean valid) {
+        ByteBuffer event = begin(CLAIM, 5);
+        event.putInt(number).put((byte) (valid ? 1 : 0));
+        return end(event);
+    }
+
+    /**
+     * Waits until everything up to the specified position is durable. Waiting
+     * threads are served together by the next fsync of the flusher thread.
+     *
+     * @param position the position, as returned when journaling an event
+     */
+    void await(long position) {
+        if (!synchronous)
+            return;
+        synchronized (flushLock) {
+            if (position > requested) {
+                requested = position;
+                flushLock.notifyAll();
+            }
+            try {
+                while (flushed < position && !closed)
+                    flushLock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Reserves room for an event in the current chunk and writes its type. The
+     * length and checksum are filled in by {@code end()}.
+     */
+    private ByteBuffer begin(byte type, int dataLength) {
+        int length = 1 + dataLength;
+        if (8 + length > CHUNK_SIZE - HEADER_SIZE)
+            throw new IllegalArgumentException("Event too big for the journal");
+        try {
+            if (chunk == null)
+                throw new IllegalStateException("The journal has been closed");
+            if (chunk.remaining() < 8 + length) {
+                if (chunk.remaining() >= 4)
+                    chunk.putInt(SKIP);
+                nextChunk();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("The journal can't grow", e);
+        }
+        chunk.mark();
+        chunk.putInt(length).putInt(0).put(type);
+        return chunk;
+    }
+
+    /**
+     * Fills in the length and checksum of the event just written and returns the
+     * position it ends at.
+     */
+    private long end(ByteBuffer event) {
+        int endPosition = event.position();
+        event.reset();
+        int start = event.position();
+        crc.reset();
+        crc.update(event.duplicate().position(start + 8).limit(endPosition));
+        event.putInt(start + 4, (int) crc.getValue());
+        event.position(endPosition);
+        written = chunkStart + endPosition;
+        return written;
+    }
+
+    /**
+     * Forces the current chunk to disk and maps the next one.
+     */
+    private void nextChunk() throws IOException {
+        chunk.force();
+        markFlushed(written);
+        chunkOffset += CHUNK_SIZE;
+        chunkStart += CHUNK_SIZE;
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, chunkOffset, CHUNK_SIZE);
+    }
+
+    /**
+     * Closes the current file and starts the next one.
+     */
+    private void roll() throws IOException {
+        if (channel != null) {
+            chunk.force();
+            markFlushed(written);
+            channel.close();
+        }
+        sequence++;
+        channel = FileChannel.open(directory.resolve(journalName(sequence)), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, 0, CHUNK_SIZE);
+        chunk.putInt(MAGIC).putInt(VERSION).putLong(sequence);
+        journaledTerms = new BitSet();
+        // positions keep growing across chunks and files, so waiting threads can
+        // compare them, while chunkOffset is the offset within the file
+        chunkOffset = 0;
+        chunkStart = written;
+        written += HEADER_SIZE;
+        chunk.force();
+        markFlushed(written);
+    }
+
+    private void markFlushed(long position) {
+        synchronized (flushLock) {
+            if (position > flushed)
+                flushed = position;
+            flushLock.notifyAll();
+        }
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                synchronized (flushLock) {
+                    if (requested <= flushed && !closed)
+                        flushLock.wait(FLUSH_INTERVAL);
+                    if (closed)
+                        return;
+                }
+                MappedByteBuffer buffer;
+                long target;
+                int from;
+                synchronized (this) {
+                    buffer = chunk;
+                    target = written;
+                    from = (int) Math.max(0, flushed - chunkStart);
+                }
+                if (buffer != null && target > flushed) {
+                    buffer.force(from, (int) (target - chunkStart) - from);
+                    markFlushed(target);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Applies the events of a journal file to the GameEngine, up to the end of the
+     * journal or the first damaged event.
+     */
+    private static void replay(Path file, GameEngine engine, TermDictionary dictionary) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE)
+                return;
+            int[] ids = new int[16];
+            Arrays.fill(ids, -1);
+            CRC32C check = new CRC32C();
+            for (long start = 0; start < size; start += CHUNK_SIZE) {
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(CHUNK_SIZE, size - start));
+                if (start == 0 && (chunk.getInt() != MAGIC || chunk.getInt() != VERSION))
+                    throw new IOException(file + " is not a journal");
+                if (start == 0)
+                    chunk.getLong();
+                while (chunk.remaining() >= 8) {
+                    int length = chunk.getInt();
+                    if (length == SKIP)
+                        break;
+                    if (length <= 0 || length > chunk.remaining() - 4)
+                        return;
+                    int crc = chunk.getInt();
+                    int data = chunk.position();
+                    check.reset();
+                    check.update(chunk.duplicate().limit(data + length));
+                    if ((int) check.getValue() != crc)
+                        return;
+                    ids = apply(chunk, engine, dictionary, ids);
+                    chunk.position(data + length);
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies one event, returning the possibly grown mapping from the term ids
+     * in the journal to the ids in the TermDictionary.
+     */
+    private static int[] apply(ByteBuffer event, GameEngine engine, TermDictionary dictionary, int[] ids)
+            throws IOException {
+        byte type = event.get();
+        switch (type) {
+            case TERM: {
+                int id = event.getInt();
+                String text = getString(event);
+                if (id >= ids.length) {
+                    int oldLength = ids.length;
+                    ids = Arrays.copyOf(ids, Math.max(id + 1, oldLength * 2));
+                    Arrays.fill(ids, oldLength, ids.length, -1);
+                }
+                ids[id] = dictionary.intern(text);
+                break;
+            }
+            case CARD: {
+                int size = event.getInt();
+                int[] terms = new int[size * size];
+                for (int cell = 0; cell < terms.length; cell++) {
+                    int id = event.getInt();
+                    if (id != BingoCard.FREE && (id < 0 || id >= ids.length || ids[id] < 0))
+                        throw new IOException("The journal refers to an unknown term");
+                    terms[cell] = id == BingoCard.FREE ? BingoCard.FREE : ids[id];
+                }
+                engine.addCard(new BingoCard(dictionary, size, terms));
+                break;
+            }
+            case CALL:
+                engine.call(getString(event));
+                break;
+            case MARK:
+                engine.mark(event.getInt(), event.getInt());
+                break;
+            case CLAIM:
+                engine.restoreClaim(event.getInt(), event.get() != 0);
+                break;
+            default:
+                throw new IOException("Unknown event in the journal: " + type);
+        }
+        return ids;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<Long> sequences(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    result.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static String journalName(long sequence) {
+        return String.format("%s%016d%s", JOURNAL_PREFIX, sequence, JOURNAL_SUFFIX);
+    }
+
+    private static String snapshotName(long sequence) {
+        return String.format("%s%016d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX);
+    }
+}
@@ -0,0 +1,187 @@
+package BingoParts;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Simulates games of Bingo to find out how long they last for a given BingoSet,
+ * card size, free tile option and number of players. Every game draws new
+ * BingoCards, calls the entries of the BingoSet in random order and stops at the
+ * first call that gives any BingoCard a Bingo.
+ * <p>
+ * The games are played on a real GameEngine, so a Bingo means exactly what it
+ * means in live play. They are split across the common ForkJoinPool, every
+ * split handing a split of the random generator to each half, so a simulation
+ * with the same seed always gives the same result. Every leaf task counts into
+ * its own histograms, which are added up when the tasks are joined, so the
+ * threads never share any mutable state.
+ *
+ * @author Lucas Schlierf
+ */
+public final class GameSimulator {
+
+    /**
+     * The number of games a task plays itself instead of splitting them further.
+     */
+    private static final int GAMES_PER_TASK = 256;
+
+    private final CardGenerator generator;
+    private final int cardsPerGame;
+
+    /**
+     * Creates a new GameSimulator.
+     *
+     * @param generator    the CardGenerator to draw the BingoCards with
+     * @param cardsPerGame the number of BingoCards playing in every game
+     */
+    public GameSimulator(CardGenerator generator, int cardsPerGame) {
+        if (cardsPerGame < 1)
+            throw new IllegalArgumentException("At least one BingoCard has to play");
+        this.generator = generator;
+        this.cardsPerGame = cardsPerGame;
+    }
+
+    /**
+     * Creates a new GameSimulator for BingoCards like the ones
+     * {@code BingoCard.createFromSet(setName, size, addFreeTile)} creates.
+     *
+     * @param setName      the name of the BingoSet
+     * @param size         the size of the BingoCards
+     * @param addFreeTile  wether to add a free BingoTile in the middle (only works
+     *                     for odd sizes)
+     * @param cardsPerGame the number of BingoCards playing in every game
+     * @return {@code null} if the BingoSet doesn't contain enough entries, or the
+     *         new GameSimulator otherwise
+     * @throws IOException if an IOException occurs while fetching the BingoSet
+     */
+    public static GameSimulator forSet(String setName, int size, boolean addFreeTile, int cardsPerGame)
+            throws IOException {
+        CardGenerator generator = CardGenerator.forSet(setName, size, addFreeTile);
+        return generator == null ? null : new GameSimulator(generator, cardsPerGame);
+    }
+
+    /**
+     * Simulates the specified number of games with a random seed.
+     *
+     * @param games the number of games
+     * @return the results of the simulation
+     */
+    public SimulationReport run(long games) {
+        return run(games, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Simulates the specified number of games.
+     *
+     * @param games the number of games
+     * @param seed  the seed for the random generator
+     * @return the results of the simulation
+     */
+    public SimulationReport run(long games, long seed) {
+        long start = System.nanoTime();
+        Tally tally = ForkJoinPool.commonPool().invoke(new SimulationTask(0, games, new SplittableRandom(seed)));
+        return new SimulationReport(tally.draws, tally.winners, System.nanoTime() - start);
+    }
+
+    /**
+     * The histograms of one part of the simulation.
+     */
+    private final class Tally {
+        private final long[] draws = new long[generator.getEntries() + 1];
+        private final long[] winners = new long[cardsPerGame + 1];
+
+        Tally add(Tally other) {
+            for (int i = 0; i < draws.length; i++) {
+                draws[i] += other.draws[i];
+            }
+            for (int i = 0; i < winners.length; i++) {
+                winners[i] += other.winners[i];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Plays a range of games, splitting it in halves until it is small enough.
+     */
+    private final class SimulationTask extends RecursiveTask<Tally> {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        private final SplittableRandom random;
+
+        SimulationTask(long from, long to, SplittableRandom random) {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from <= GAMES_PER_TASK)
+                return play();
+            long middle = (from + to) >>> 1;
+            SimulationTask left = new SimulationTask(from, middle, random.split());
+            SimulationTask right = new SimulationTask(middle, to, random);
+            left.fork();
+            Tally tally = right.compute();
+            return tally.add(left.join());
+        }
+
+        private Tally play() {
+            Tally tally = new Tally();
+            GameEngine game = new GameEngine();
+            Supplier<BingoCard> cards = generator.supplier(random);
+            int[] order = new int[generator.getEntries()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            for (long n = from; n < to; n++) {
+                game.reset();
+                for (int c = 0; c < cardsPerGame; c++) {
+                    game.addCard(cards.get());
+                }
+                int calls = 0;
+                int[] won = {};
+                // draw the next call with one step of a Fisher-Yates shuffle
+                while (won.length == 0 && calls < order.length) {
+                    int j = calls + random.nextInt(order.length - calls);
+                    int entry = order[j];
+                    order[j] = order[calls];
+                    order[calls++] = entry;
+                    won = game.call(generator.termAt(entry));
+                }
+                tally.draws[calls]++;
+                tally.winners[won.length]++;
+            }
+            return tally;
+        }
+    }
+
+    /**
+     * Runs a simulation from the command line with the arguments setName, size,
+     * cards per game, number of games and optionally {@code --no-free-tile}.
+     */
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: setName, size, cards per game, games, [--no-free-tile]");
+            return;
+        }
+        try {
+            boolean addFreeTile = !(args.length > 4 && args[4].equals("--no-free-tile"));
+            GameSimulator simulator = forSet(args[0], Integer.parseInt(args[1]), addFreeTile,
+                    Integer.parseInt(args[2]));
+            if (simulator == null) {
+                System.out.println("The set '" + args[0] + "' is too small for that size.");
+                return;
+            }
+            System.out.println(simulator.run(Long.parseLong(args[3])));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
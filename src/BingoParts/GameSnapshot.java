@@ -0,0 +1,276 @@
+package BingoParts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * A compact copy of the state of a GameEngine: the called terms, the term ids
+ * and marks of every BingoCard and the claims. The texts of the terms are
+ * stored once, the BingoCards only refer to them by id, so a BingoCard takes
+ * four bytes per position plus its marks.
+ * <p>
+ * A snapshot file consists of the magic number "BSNP", the format version, the
+ * journal sequence number the snapshot belongs to, the sections for terms,
+ * calls, BingoCards and claims, and a CRC32C checksum of everything before it.
+ * Snapshots are written to a temporary file that is moved into place, and read
+ * through a memory map, so loading millions of BingoCards is mostly bulk
+ * copying.
+ *
+ * @author Lucas Schlierf
+ */
+final class GameSnapshot {
+
+    private static final int MAGIC = 0x42534E50;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final long sequence;
+    private final Map<Integer, String> terms;
+    private final List<String> calls;
+    private final int[][] cards;
+    private final long[][] marks;
+    private final int[] claims;
+
+    private GameSnapshot(long sequence, Map<Integer, String> terms, List<String> calls, int[][] cards,
+            long[][] marks, int[] claims) {
+        this.sequence = sequence;
+        this.terms = terms;
+        this.calls = calls;
+        this.cards = cards;
+        this.marks = marks;
+        this.claims = claims;
+    }
+
+    /**
+     * Copies the state of the GameEngine. The caller has to hold the lock of the
+     * GameEngine, so the copy is consistent.
+     *
+     * @param engine   the GameEngine
+     * @param sequence the sequence number of the journal that continues from this
+     *                 state
+     * @return the snapshot
+     */
+    static GameSnapshot capture(GameEngine engine, long sequence) {
+        int count = engine.getCardCount();
+        int[][] cards = new int[count][];
+        long[][] marks = new long[count][];
+        Map<Integer, String> terms = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            BingoCard card = engine.getCard(i);
+            int size = card.getSize();
+            cards[i] = new int[size * size];
+            for (int cell = 0; cell < cards[i].length; cell++) {
+                int term = card.getTerm(cell);
+                cards[i][cell] = term;
+                if (term != BingoCard.FREE && !terms.containsKey(term))
+                    terms.put(term, card.getDictionary().get(term));
+            }
+            marks[i] = card.getMarks();
+        }
+        return new GameSnapshot(sequence, terms, engine.getCalls(), cards, marks, engine.getClaims());
+    }
+
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Restores the state into the specified GameEngine, which must not contain any
+     * BingoCards yet.
+     *
+     * @param engine     the GameEngine
+     * @param dictionary the TermDictionary to create the BingoCards with
+     */
+    void restore(GameEngine engine, TermDictionary dictionary) {
+        for (String call : calls) {
+            engine.call(call);
+        }
+        Map<Integer, Integer> ids = new HashMap<>();
+        for (Map.Entry<Integer, String> term : terms.entrySet()) {
+            ids.put(term.getKey(), dictionary.intern(term.getValue()));
+        }
+        for (int i = 0; i < cards.length; i++) {
+            int[] local = new int[cards[i].length];
+            for (int cell = 0; cell < local.length; cell++) {
+                local[cell] = cards[i][cell] == BingoCard.FREE ? BingoCard.FREE : ids.get(cards[i][cell]);
+            }
+            BingoCard card = new BingoCard(dictionary, (int) Math.round(Math.sqrt(local.length)), local);
+            card.setMarks(marks[i]);
+            engine.addCard(card);
+        }
+        for (int claim : claims) {
+            engine.restoreClaim(claim, true);
+        }
+    }
+
+    /**
+     * Writes the snapshot to the specified file, replacing it atomically.
+     *
+     * @param file the file
+     * @throws IOException if writing fails
+     */
+    void write(Path file) throws IOException {
+        Path temp = file.resolveSibling("." + file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(sequence);
+            out.putInt(terms.size());
+            for (Map.Entry<Integer, String> term : terms.entrySet()) {
+                out.putInt(term.getKey());
+                out.putString(term.getValue());
+            }
+            out.putInt(calls.size());
+            for (String call : calls) {
+                out.putString(call);
+            }
+            out.putInt(cards.length);
+            for (int i = 0; i < cards.length; i++) {
+                out.putInt(cards[i].length);
+                for (int term : cards[i]) {
+                    out.putInt(term);
+                }
+                out.putInt(marks[i].length);
+                for (long word : marks[i]) {
+                    out.putLong(word);
+                }
+            }
+            out.putInt(claims.length);
+            for (int claim : claims) {
+                out.putInt(claim);
+            }
+            out.finish();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot.
+     *
+     * @param file the file
+     * @return the snapshot
+     * @throws IOException if the file can't be read, or isn't a complete snapshot
+     */
+    static GameSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 24 || channel.size() > Integer.MAX_VALUE)
+                throw new IOException(file + " is not a snapshot");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int end = buffer.limit() - 4;
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate().limit(end));
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || (int) crc.getValue() != buffer.getInt(end))
+                throw new IOException(file + " is damaged");
+            buffer.limit(end).position(8);
+            try {
+                long sequence = buffer.getLong();
+                int termCount = buffer.getInt();
+                Map<Integer, String> terms = new HashMap<>();
+                for (int i = 0; i < termCount; i++) {
+                    int id = buffer.getInt();
+                    terms.put(id, getString(buffer));
+                }
+                String[] calls = new String[buffer.getInt()];
+                for (int i = 0; i < calls.length; i++) {
+                    calls[i] = getString(buffer);
+                }
+                int[][] cards = new int[buffer.getInt()][];
+                long[][] marks = new long[cards.length][];
+                for (int i = 0; i < cards.length; i++) {
+                    cards[i] = new int[buffer.getInt()];
+                    buffer.asIntBuffer().get(cards[i]);
+                    buffer.position(buffer.position() + 4 * cards[i].length);
+                    marks[i] = new long[buffer.getInt()];
+                    buffer.asLongBuffer().get(marks[i]);
+                    buffer.position(buffer.position() + 8 * marks[i].length);
+                }
+                int[] claims = new int[buffer.getInt()];
+                buffer.asIntBuffer().get(claims);
+                return new GameSnapshot(sequence, terms, List.of(calls), cards, marks, claims);
+            } catch (RuntimeException e) {
+                throw new IOException(file + " is damaged", e);
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes through a buffer into a FileChannel, computing the checksum of
+     * everything written.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CRC32C crc;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.crc = new CRC32C();
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int offset = 0; offset < bytes.length;) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        /**
+         * Writes the checksum and everything still buffered.
+         */
+        void finish() throws IOException {
+            flush();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package BingoParts;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the precomputed bitmasks of every line (rows, columns and both
+ * diagonals) of a BingoCard with a certain size. The BingoTile at
+ * {@code (x, y)} is represented by bit {@code y * size + x}, spread over as many
+ * {@code long} words as needed, so sizes bigger than 8 work as well.
+ *
+ * @author Lucas Schlierf
+ */
+final class LineMasks {
+
+    private static final Map<Integer, LineMasks> CACHE = new ConcurrentHashMap<>();
+
+    private final int size;
+    private final int words;
+    private final long[][] lines;
+    private final int[][] linesOfCell;
+
+    /**
+     * Computes the line masks for the specified size. Use {@code forSize()} to
+     * obtain cached instances.
+     *
+     * @param size the side length of the BingoCard
+     */
+    private LineMasks(int size) {
+        this.size = size;
+        this.words = wordsFor(size * size);
+        this.lines = new long[2 * size + 2][words];
+        this.linesOfCell = new int[size * size][];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                set(lines[i], i * size + j);
+                set(lines[size + i], j * size + i);
+            }
+            set(lines[2 * size], i * size + i);
+            set(lines[2 * size + 1], i * size + size - i - 1);
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                boolean diagonalA = x == y;
+                boolean diagonalB = x + y == size - 1;
+                int[] cellLines = new int[2 + (diagonalA ? 1 : 0) + (diagonalB ? 1 : 0)];
+                int n = 0;
+                cellLines[n++] = y;
+                cellLines[n++] = size + x;
+                if (diagonalA)
+                    cellLines[n++] = 2 * size;
+                if (diagonalB)
+                    cellLines[n++] = 2 * size + 1;
+                linesOfCell[y * size + x] = cellLines;
+            }
+        }
+    }
+
+    /**
+     * Returns the line masks for the specified size.
+     *
+     * @param size the side length of the BingoCard
+     * @return the (shared) line masks
+     */
+    static LineMasks forSize(int size) {
+        return CACHE.computeIfAbsent(size, LineMasks::new);
+    }
+
+    /**
+     * Returns how many {@code long} words are needed to hold the specified number
+     * of bits.
+     *
+     * @param bits the number of bits
+     * @return the number of words
+     */
+    static int wordsFor(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    static void set(long[] mask, int bit) {
+        mask[bit >>> 6] |= 1L << bit;
+    }
+
+    static void clear(long[] mask, int bit) {
+        mask[bit >>> 6] &= ~(1L << bit);
+    }
+
+    static boolean get(long[] mask, int bit) {
+        return (mask[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getWords() {
+        return words;
+    }
+
+    /**
+     * Evaluates whether the specified line is completely contained in the marked
+     * bits.
+     *
+     * @param marks the marked bits
+     * @param line  the index of the line
+     * @return {@code true} if every bit of the line is set
+     */
+    boolean isLineComplete(long[] marks, int line) {
+        long[] mask = lines[line];
+        for (int w = 0; w < words; w++) {
+            if ((marks[w] & mask[w]) != mask[w])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Evaluates whether any line is completely contained in the marked bits.
+     *
+     * @param marks the marked bits
+     * @return {@code true} if at least one line is complete
+     */
+    boolean anyLineComplete(long[] marks) {
+        for (int line = 0; line < lines.length; line++) {
+            if (isLineComplete(marks, line))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Evaluates whether any line running through the specified cell is completely
+     * contained in the marked bits. This only looks at the (at most four) lines
+     * through the cell.
+     *
+     * @param marks the marked bits
+     * @param cell  the index of the cell ({@code y * size + x})
+     * @return {@code true} if a line through the cell is complete
+     */
+    boolean anyLineCompleteThrough(long[] marks, int cell) {
+        for (int line : linesOfCell[cell]) {
+            if (isLineComplete(marks, line))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of lines of a BingoCard with this size.
+     *
+     * @return the number of lines
+     */
+    int numLines() {
+        return lines.length;
+    }
+
+    /**
+     * Returns the mask of the specified line. The array must not be modified.
+     *
+     * @param line the index of the line
+     * @return the mask of the line
+     */
+    long[] getLine(int line) {
+        return lines[line];
+    }
+
+    /**
+     * Returns the indices of all lines running through the specified cell. The
+     * array must not be modified.
+     *
+     * @param cell the index of the cell ({@code y * size + x})
+     * @return the indices of the lines
+     */
+    int[] getLinesOfCell(int cell) {
+        return linesOfCell[cell];
+    }
+}
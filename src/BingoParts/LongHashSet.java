@@ -0,0 +1,109 @@
+package BingoParts;
+
+import java.util.Arrays;
+
+/**
+ * A set of longs, stored unboxed in one array with open addressing and linear
+ * probing. Since it only holds fingerprints, which are already well mixed, the
+ * values are used as their own hash. The value {@code 0} marks empty slots and
+ * is tracked separately.
+ *
+ * @author Lucas Schlierf
+ */
+final class LongHashSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] slots;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    /**
+     * Creates a new LongHashSet with room for the specified number of values
+     * before it has to grow.
+     *
+     * @param expected the expected number of values
+     */
+    LongHashSet(long expected) {
+        this.slots = new long[capacityFor(expected)];
+        this.mask = slots.length - 1;
+    }
+
+    /**
+     * Adds the value to the set.
+     *
+     * @param value the value
+     * @return {@code true} if the value wasn't contained yet
+     */
+    boolean add(long value) {
+        if (value == 0) {
+            if (containsZero)
+                return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = (int) (value ^ value >>> 32) & mask;
+        while (slots[slot] != 0) {
+            if (slots[slot] == value)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+        if (++size > slots.length / 4 * 3)
+            grow();
+        return true;
+    }
+
+    /**
+     * Checks wether the value is contained in the set.
+     *
+     * @param value the value
+     * @return {@code true} if the value is contained
+     */
+    boolean contains(long value) {
+        if (value == 0)
+            return containsZero;
+        int slot = (int) (value ^ value >>> 32) & mask;
+        while (slots[slot] != 0) {
+            if (slots[slot] == value)
+                return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(slots, 0);
+        size = 0;
+        containsZero = false;
+    }
+
+    private void grow() {
+        if (slots.length == 1 << 30)
+            throw new IllegalStateException("LongHashSet can't grow beyond " + size + " values");
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        mask = slots.length - 1;
+        for (long value : old) {
+            if (value == 0)
+                continue;
+            int slot = (int) (value ^ value >>> 32) & mask;
+            while (slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            slots[slot] = value;
+        }
+    }
+
+    private static int capacityFor(long expected) {
+        long needed = Math.max(MIN_CAPACITY, expected / 3 * 4 + 1);
+        if (needed > 1 << 30)
+            return 1 << 30;
+        return Integer.highestOneBit((int) needed - 1) << 1;
+    }
+}
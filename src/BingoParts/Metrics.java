@@ -0,0 +1,340 @@
+package BingoParts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.EventType;
+
+/**
+ * Counts and times the operations of creating and printing BingoCards: loading
+ * BingoSets, generating BingoCards, laying them out, rendering PDF pages and
+ * writing files. Every Timer keeps a latency histogram, and every timed
+ * operation is also reported as an {@code OperationEvent} to the Flight
+ * Recorder while a recording with that event enabled is running.
+ * <p>
+ * Metrics are disabled by default. While they are disabled and no recording
+ * wants the events, starting a Timer only reads two flags and returns a shared
+ * Sample that does nothing, so the instrumented code runs at full speed.
+ *
+ * @author Lucas Schlierf
+ */
+public final class Metrics {
+
+    private static final List<Counter> COUNTERS = new ArrayList<>();
+    private static final List<Timer> TIMERS = new ArrayList<>();
+    private static final EventType EVENT_TYPE = EventType.getEventType(OperationEvent.class);
+
+    /**
+     * Reading a BingoSet from disk.
+     */
+    public static final Timer SET_LOAD = new Timer("set.load");
+    /**
+     * Drawing the entries of a new BingoCard.
+     */
+    public static final Timer CARD_GENERATION = new Timer("card.generate");
+    /**
+     * Wrapping the texts of a BingoCard into lines.
+     */
+    public static final Timer LAYOUT = new Timer("card.layout");
+    /**
+     * Rendering one PDF page.
+     */
+    public static final Timer PAGE_RENDER = new Timer("pdf.render");
+    /**
+     * Saving or merging a PDF.
+     */
+    public static final Timer FILE_WRITE = new Timer("pdf.write");
+
+    /**
+     * Requests for BingoSet entries answered from the cache.
+     */
+    public static final Counter SET_CACHE_HITS = new Counter("set.cache.hits");
+    /**
+     * Requests for BingoSet entries that had to read the BingoSet.
+     */
+    public static final Counter SET_CACHE_MISSES = new Counter("set.cache.misses");
+    /**
+     * Generated BingoCards dropped as duplicates by a UniqueCards.
+     */
+    public static final Counter DUPLICATE_CARDS = new Counter("card.duplicates");
+
+    private static volatile boolean enabled;
+
+    /**
+     * This class only has static Methods, so it shouldn't be instanciated.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Enables or disables collecting metrics. Flight Recorder events are emitted
+     * whenever a recording wants them, no matter if metrics are enabled.
+     *
+     * @param enabled wether to collect metrics
+     */
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Returns wether metrics are collected.
+     *
+     * @return {@code true} if metrics are collected
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets all counters and histograms back to zero.
+     */
+    public static void reset() {
+        for (Counter counter : counters()) {
+            counter.count.reset();
+        }
+        for (Timer timer : timers()) {
+            timer.reset();
+        }
+    }
+
+    /**
+     * Formats the current values of all counters and timers, one per line. Timers
+     * show their count, mean, 50th, 90th, 99th and 99.9th percentile and maximum,
+     * in microseconds.
+     *
+     * @return the formatted values
+     */
+    public static String snapshot() {
+        StringBuilder out = new StringBuilder("Metrics\n");
+        for (Counter counter : counters()) {
+            out.append(String.format(Locale.ROOT, "%-18s %10d%n", counter.name, counter.get()));
+        }
+        out.append(String.format(Locale.ROOT, "%-18s %10s %10s %10s %10s %10s %10s %10s%n", "timer (us)", "count",
+                "mean", "p50", "p90", "p99", "p99.9", "max"));
+        for (Timer timer : timers()) {
+            out.append(String.format(Locale.ROOT, "%-18s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", timer.name,
+                    timer.getCount(), timer.getMean() / 1e3, timer.getPercentile(50) / 1e3,
+                    timer.getPercentile(90) / 1e3, timer.getPercentile(99) / 1e3, timer.getPercentile(99.9) / 1e3,
+                    timer.getMax() / 1e3));
+        }
+        return out.toString();
+    }
+
+    private static List<Counter> counters() {
+        synchronized (COUNTERS) {
+            return Collections.unmodifiableList(new ArrayList<>(COUNTERS));
+        }
+    }
+
+    private static List<Timer> timers() {
+        synchronized (TIMERS) {
+            return Collections.unmodifiableList(new ArrayList<>(TIMERS));
+        }
+    }
+
+    /**
+     * A number of events.
+     */
+    public static final class Counter {
+        private final String name;
+        private final LongAdder count;
+
+        private Counter(String name) {
+            this.name = name;
+            this.count = new LongAdder();
+            synchronized (COUNTERS) {
+                COUNTERS.add(this);
+            }
+        }
+
+        /**
+         * Counts one event, if metrics are enabled.
+         */
+        public void increment() {
+            if (enabled)
+                count.increment();
+        }
+
+        public long get() {
+            return count.sum();
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * The latencies of one kind of operation. The histogram has eight buckets per
+     * power of two, so every recorded latency is off by 12.5% at most.
+     */
+    public static final class Timer {
+        private static final int SUB_BITS = 3;
+        private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+        private final String name;
+        private final AtomicLongArray buckets;
+        private final LongAdder count;
+        private final LongAdder total;
+        private final AtomicLong max;
+
+        private Timer(String name) {
+            this.name = name;
+            this.buckets = new AtomicLongArray(BUCKETS);
+            this.count = new LongAdder();
+            this.total = new LongAdder();
+            this.max = new AtomicLong();
+            synchronized (TIMERS) {
+                TIMERS.add(this);
+            }
+        }
+
+        /**
+         * Starts timing an operation.
+         *
+         * @return the Sample to end when the operation is done
+         */
+        public Sample start() {
+            if (!enabled && !EVENT_TYPE.isEnabled())
+                return Sample.NONE;
+            return new Sample(this);
+        }
+
+        /**
+         * Records the latency of one operation.
+         *
+         * @param nanos the latency, in nanoseconds
+         */
+        public void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            buckets.incrementAndGet(bucket(value));
+            count.increment();
+            total.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Returns the mean latency.
+         *
+         * @return the mean latency in nanoseconds, or 0 if nothing was recorded
+         */
+        public double getMean() {
+            long n = count.sum();
+            return n == 0 ? 0 : total.sum() / (double) n;
+        }
+
+        /**
+         * Returns the latency below which the specified percentage of operations
+         * finished, as the upper bound of its histogram bucket.
+         *
+         * @param percent the percentage, from 0 to 100
+         * @return the latency in nanoseconds, or 0 if nothing was recorded
+         */
+        public long getPercentile(double percent) {
+            long[] counts = new long[BUCKETS];
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+                n += counts[i];
+            }
+            if (n == 0)
+                return 0;
+            long rank = (long) Math.ceil(n * percent / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(rank, 1))
+                    return Math.min(upperBound(i), getMax());
+            }
+            return getMax();
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            total.reset();
+            max.set(0);
+        }
+
+        static int bucket(long value) {
+            if (value < 1 << SUB_BITS)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exponent - SUB_BITS)) & 7);
+        }
+
+        static long upperBound(int bucket) {
+            if (bucket < 1 << SUB_BITS)
+                return bucket;
+            int shift = (bucket >>> SUB_BITS) - 1;
+            long lower = (long) ((1 << SUB_BITS) + (bucket & 7)) << shift;
+            return lower + (1L << shift) - 1;
+        }
+    }
+
+    /**
+     * One running operation.
+     */
+    public static final class Sample {
+        private static final Sample NONE = new Sample(null);
+
+        private final Timer timer;
+        private final long start;
+        private final OperationEvent event;
+
+        private Sample(Timer timer) {
+            this.timer = timer;
+            this.start = timer == null ? 0 : System.nanoTime();
+            if (timer != null && EVENT_TYPE.isEnabled()) {
+                event = new OperationEvent();
+                event.begin();
+            } else {
+                event = null;
+            }
+        }
+
+        /**
+         * Ends the operation, recording its latency.
+         */
+        public void end() {
+            end(null);
+        }
+
+        /**
+         * Ends the operation, recording its latency.
+         *
+         * @param detail what the operation worked on, like the name of the
+         *               BingoSet, for the Flight Recorder event
+         */
+        public void end(String detail) {
+            if (timer == null)
+                return;
+            if (enabled)
+                timer.record(System.nanoTime() - start);
+            if (event != null && event.shouldCommit()) {
+                event.operation = timer.name;
+                event.detail = detail;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package BingoParts;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for one timed operation, like loading a BingoSet or
+ * writing a PDF. The operation is named like the Timer in {@code Metrics} that
+ * measures it. Recording it is enabled like any other event, for example with
+ * {@code -XX:StartFlightRecording:settings=profile}.
+ *
+ * @author Lucas Schlierf
+ */
+@Name("BingoParts.Operation")
+@Label("Bingo Operation")
+@Category("Bingo")
+@Description("Loading a BingoSet, generating or laying out a BingoCard, rendering a page or writing a file")
+@StackTrace(false)
+final class OperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Detail")
+    String detail;
+}
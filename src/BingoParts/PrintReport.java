@@ -0,0 +1,60 @@
+package BingoParts;
+
+/**
+ * Summarizes a finished print run: where the PDF was saved, how much was printed
+ * and how long it took.
+ * 
+ * @author Lucas Schlierf
+ */
+public class PrintReport {
+    private final String path;
+    private final int cards;
+    private final int pages;
+    private final long nanos;
+
+    /**
+     * Creates a new PrintReport.
+     * 
+     * @param path  the path of the PDF
+     * @param cards the number of BingoCards printed
+     * @param pages the number of pages printed
+     * @param nanos the time the print run took, in nanoseconds
+     */
+    public PrintReport(String path, int cards, int pages, long nanos) {
+        this.path = path;
+        this.cards = cards;
+        this.pages = pages;
+        this.nanos = nanos;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getCards() {
+        return cards;
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Returns how many pages were printed per second.
+     * 
+     * @return the pages per second
+     */
+    public double getPagesPerSecond() {
+        return nanos == 0 ? 0 : pages * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Printed %d cards on %d pages in %.2f s (%.1f pages/s) to %s", cards, pages, nanos / 1e9,
+                getPagesPerSecond(), path);
+    }
+}
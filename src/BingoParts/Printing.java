@@ -2,14 +2,27 @@ package BingoParts;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;
-
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFMergerUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
 
 /**
  * Provides several methods for formatting BingoCards and printing them to a PDF
@@ -24,6 +37,18 @@ public class Printing {
     private static final int PAGE_SIZE_X = 550;
     private static final int PAGE_SIZE_Y = 780;
 
+    /**
+     * The share of the page width each of the BingoCards printed six per page may
+     * take up.
+     */
+    private static final float CARD_WIDTH = 0.48f;
+
+    /**
+     * How much heap a bulk print may use for its document before moving it to a
+     * scratch file, in bytes.
+     */
+    private static final long BULK_MAIN_MEMORY = 16 * 1024 * 1024;
+
     private static final String PATH = Printing.class.getClassLoader().getResource("BingoParts/PrintOutput").getPath();
 
     /**
@@ -33,31 +58,25 @@ public class Printing {
     }
 
     /**
-     * Formats the BingoCard for console printing, using
-     * {@code formatForConsoleOutput()}. Leaves out whether the BingoTiles are
-     * marked off.
+     * Formats the BingoCard for console printing, using the ConsoleRenderer.
+     * Leaves out whether the BingoTiles are marked off.
      * 
      * @param card the BingoCard to format
      * @return a formatted String, ready for console printing
      */
     public static String toConsolePrint(BingoCard card) {
-        return formatForConsoleOutput(Arrays.stream(card.getTiles())
-                .map(a -> Arrays.stream(a).map(t -> t.getText().replaceAll(" ", "\n")).toArray(String[]::new))
-                .toArray(String[][]::new));
+        return ConsoleRenderer.toString(card, false);
     }
 
     /**
-     * Formats the BingoCard for console output, using
-     * {@code formatForConsoleOutput()}, also displaying which BingoTiles have been
-     * marked off
+     * Formats the BingoCard for console output, using the ConsoleRenderer, also
+     * displaying which BingoTiles have been marked off
      * 
      * @param card the BingoCard to format
      * @return a formatted String, ready for console output
      */
     public static String toConsoleOutput(BingoCard card) {
-        return formatForConsoleOutput(Arrays.stream(card.getTiles())
-                .map(a -> Arrays.stream(a).map(t -> t.toString().replaceAll(" ", "\n")).toArray(String[]::new))
-                .toArray(String[][]::new));
+        return ConsoleRenderer.toString(card, true);
     }
 
     /**
@@ -68,93 +87,7 @@ public class Printing {
      * @return a formatted String, ready for console printing.
      */
     protected static String formatForConsoleOutput(String[][] texts) {
-        StringBuilder lineSeparator = new StringBuilder();
-        String[] allTexts = Arrays.stream(texts).reduce(new String[0], (a, b) -> mergeTwoArrays(a, b));
-        int maxRows = Arrays.stream(allTexts)
-                .mapToInt(s -> Arrays.stream(s.split("\n")).mapToInt(w -> w.length()).max().getAsInt()).max()
-                .getAsInt();
-        texts = formatTexts(texts, maxRows);
-        allTexts = Arrays.stream(texts).reduce(new String[0], (a, b) -> mergeTwoArrays(a, b));
-        int maxLines = 1
-                + Arrays.stream(allTexts).mapToInt(s -> s.length() - s.replaceAll("\n", "").length()).max().getAsInt();
-        lineSeparator.append("├");
-        for (int i = 0; i < texts.length; i++) {
-            for (int j = 0; j < maxRows; j++) {
-                lineSeparator.append("─");
-            }
-            lineSeparator.append("┼");
-        }
-        lineSeparator.deleteCharAt(lineSeparator.length() - 1);
-        lineSeparator.append("┤");
-        String middleLine = lineSeparator.toString();
-        String topLine = middleLine.replaceAll("├", "┌").replaceAll("┤", "┐").replaceAll("┼", "┬");
-        String bottomLine = topLine.replaceAll("┌", "└").replaceAll("┐", "┘").replaceAll("┬", "┴");
-
-        StringBuilder result = new StringBuilder(topLine + "\n");
-        for (int i = 0; i < texts.length; i++) {
-            for (int j = 0; j < maxLines; j++) {
-                StringBuilder currentLine = new StringBuilder();
-                currentLine.append("│");
-                for (int k = 0; k < texts.length; k++) {
-                    String[] currentText = texts[i][k].split("\n");
-                    if (j < currentText.length) {
-                        currentLine.append(currentText[j]);
-                    } else {
-                        currentLine.append(" ");
-                    }
-                    while (currentLine.length() % (maxRows + 1) != 0) {
-                        currentLine.append(" ");
-                    }
-                    currentLine.append("│");
-                }
-                currentLine.append("\n");
-                result.append(currentLine);
-            }
-            if (i + 1 < texts.length)
-                result.append(middleLine + "\n");
-            else
-                result.append(bottomLine);
-        }
-        return result.toString();
-    }
-
-    private static String[][] formatTexts(String[][] input, int maxLength) {
-        for (int i = 0; i < input.length; i++) {
-            String[] a = input[i];
-            for (int j = 0; j < a.length; j++) {
-                String[] words = a[j].split("\n");
-                for (int k = 0; k < words.length - 1; k++) {
-                    if (words[k] == null)
-                        continue;
-                    if (words[k].length() + words[k + 1].length() < maxLength) {
-                        words[k] = words[k] + " " + words[k + 1];
-                        words[k + 1] = null;
-                    }
-                }
-                input[i][j] = words[0];
-                for (int k = 1; k < words.length; k++) {
-                    if (words[k] != null)
-                        input[i][j] = input[i][j] + "\n" + words[k];
-                }
-            }
-        }
-        return input;
-    }
-
-    private static String[] mergeTwoArrays(String[] a, String[] b) {
-        String[] result = new String[a.length + b.length];
-        int index = 0;
-        for (String s : a) {
-            result[index++] = s;
-        }
-        for (String s : b) {
-            result[index++] = s;
-        }
-        return result;
-    }
-
-    private static String formatForPDF(String input) {
-        return input.replaceAll("[┼├┤┬┴┌┐└┘]", "+").replaceAll("│", "|").replaceAll("─", "-");
+        return ConsoleRenderer.toString(CardLayout.of(texts));
     }
 
     /**
@@ -177,24 +110,17 @@ public class Printing {
      * @throws IOException if an IO exception occurs while creating the PDF
      */
     public static void printToPDF(BingoCard card, String setName, String path) throws IOException {
+        Metrics.Sample render = Metrics.PAGE_RENDER.start();
         PDDocument document = new PDDocument();
         PDPage page = new PDPage();
         document.addPage(page);
 
-        PDFont font = PDType1Font.COURIER;
-
         PDPageContentStream contentStream = new PDPageContentStream(document, page);
-        contentStream.setFont(font, 14);
-        contentStream.beginText();
-        contentStream.newLineAtOffset(20, 770);
-        for (String s : formatForPDF(toConsolePrint(card)).split("\n")) {
-            contentStream.showText(s);
-            contentStream.newLineAtOffset(0, -14);
-        }
-        contentStream.endText();
+        new CardForms(document).drawCard(contentStream, CardLayout.of(card, false), 20, 770, 14);
         contentStream.close();
+        render.end();
 
-        document.save(path + "/BingoCard-" + System.currentTimeMillis() + ".pdf");
+        save(document, path + "/BingoCard-" + System.currentTimeMillis() + ".pdf");
         document.close();
     }
 
@@ -300,87 +226,425 @@ public class Printing {
      * @throws IOException if an IO exception occurs while creating the PDF
      */
     public static void printSix(String setName, int size, boolean addFreeTile, String path) throws IOException {
-        BingoCard[] cards = new BingoCard[6];
-        for (int i = 0; i < 6; i++) {
-            cards[i] = BingoCard.createFromSet(setName, size, addFreeTile);
-        }
-        String[] formatted = new String[6];
-        for (int i = 0; i < 6; i++) {
-            formatted[i] = formatForPDF(cards[i].toConsolePrint());
-        }
-        int[] widths = new int[6];
-        for (int i = 0; i < 6; i++) {
-            widths[i] = formatted[i].split("\n")[0].length();
-        }
-        int[] heights = new int[6];
-        for (int i = 0; i < 6; i++) {
-            heights[i] = formatted[i].split("\n").length;
-        }
-        int maxWidth = findmax(widths);
-        int maxHeight = findmax(heights);
-        int widthLimit = (int) ((PAGE_SIZE_X / (maxWidth * 1)) * 0.8f);
-        int heightLimit = (int) ((PAGE_SIZE_Y / (maxHeight * 2)) * 0.65f);
-        int fontSize = Math.min(widthLimit, heightLimit);
+        CardGenerator generator = CardGenerator.forSet(setName, size, addFreeTile);
+        BingoCard[] cards = generator.generateUnique(6, new UniqueCards(false)).toArray(BingoCard[]::new);
 
         PDDocument document = new PDDocument();
-        PDPage page = new PDPage();
-        document.addPage(page);
+        addCardPage(document, new CardForms(document), cards);
+
+        save(document, path + "/" + setName + "-BingoCards-Size" + size + "-" + System.currentTimeMillis() + ".pdf");
+        document.close();
+    }
 
-        PDFont font = PDType1Font.COURIER;
+    /**
+     * Creates the specified number of new BingoCards from the specified BingoSet
+     * and prints them, six per page, into one PDF. Uses the standard output path.
+     * 
+     * @param setName     the BingoSet to use for the BingoCards
+     * @param size        the size for the BingoCards
+     * @param count       the number of BingoCards
+     * @param addFreeTile wether to add a free BingoTile (only works for odd sizes)
+     * @return a report of the print run, or {@code null} if the BingoSet doesn't
+     *         contain enough entries
+     * @throws IOException if an IO exception occurs while creating the PDF
+     */
+    public static PrintReport printBulk(String setName, int size, int count, boolean addFreeTile) throws IOException {
+        return printBulk(setName, size, count, addFreeTile, PATH);
+    }
 
-        PDPageContentStream contentStream = new PDPageContentStream(document, page);
+    /**
+     * Creates the specified number of new BingoCards from the specified BingoSet
+     * and prints them, six per page, into one PDF. No two BingoCards have the same
+     * layout.
+     * 
+     * @param setName     the BingoSet to use for the BingoCards
+     * @param size        the size for the BingoCards
+     * @param count       the number of BingoCards
+     * @param addFreeTile wether to add a free BingoTile (only works for odd sizes)
+     * @param path        the path to save the PDF to
+     * @return a report of the print run, or {@code null} if the BingoSet doesn't
+     *         contain enough entries
+     * @throws IOException if an IO exception occurs while creating the PDF
+     */
+    public static PrintReport printBulk(String setName, int size, int count, boolean addFreeTile, String path)
+            throws IOException {
+        return printBulk(setName, size, count, addFreeTile, path, false);
+    }
 
-        addBarriers(contentStream);
+    /**
+     * Creates the specified number of new BingoCards from the specified BingoSet
+     * and prints them, six per page, into one PDF. The BingoCards are generated
+     * while printing, and every page is written to a scratch file as soon as it
+     * is completed, so the heap needed stays bounded by {@code BULK_MAIN_MEMORY}
+     * plus a few objects per page, no matter how many BingoCards are printed.
+     * The only thing kept per BingoCard is its fingerprint, to make sure every
+     * BingoCard is printed once at most. The BingoCards are recorded in a
+     * CardArchive next to the PDF, with the same name and the extension
+     * ".cards".
+     * 
+     * @param setName     the BingoSet to use for the BingoCards
+     * @param size        the size for the BingoCards
+     * @param count       the number of BingoCards
+     * @param addFreeTile wether to add a free BingoTile (only works for odd sizes)
+     * @param path        the path to save the PDF to
+     * @param sameTerms   wether BingoCards with the same texts in a different
+     *                    arrangement count as duplicates, too
+     * @return a report of the print run, or {@code null} if the BingoSet doesn't
+     *         contain enough entries
+     * @throws IOException              if an IO exception occurs while creating
+     *                                  the PDF
+     * @throws IllegalArgumentException if the BingoSet doesn't allow that many
+     *                                  distinct BingoCards
+     */
+    public static PrintReport printBulk(String setName, int size, int count, boolean addFreeTile, String path,
+            boolean sameTerms) throws IOException {
+        CardGenerator generator = CardGenerator.forSet(setName, size, addFreeTile);
+        if (generator == null)
+            return null;
+        long start = System.nanoTime();
+        String prefix = path + "/" + setName + "-BingoCards-Size" + size + "-" + count + "-"
+                + System.currentTimeMillis();
+        int pages;
+        try (CardArchive.Writer archive = CardArchive.create(Path.of(prefix + ".cards"), setName, size)) {
+            pages = printCards(generator.generateUnique(count, new UniqueCards(sameTerms, count, false)).iterator(),
+                    prefix + ".pdf", archive);
+            finish(archive, prefix + ".cards");
+        }
+        return new PrintReport(prefix + ".pdf", count, pages, System.nanoTime() - start);
+    }
 
-        contentStream.setFont(font, fontSize);
+    /**
+     * Creates the specified number of new BingoCards from the specified BingoSet
+     * and prints them, six per page, rendering on several threads. The pages are
+     * split into one contiguous range per shard, every shard is rendered into its
+     * own PDF like {@code printBulk()} does, and the shards are either kept as
+     * separate files or merged into one PDF in shard order. Either way, the
+     * BingoCards are recorded in one CardArchive, in the order they were printed.
+     * 
+     * @param setName     the BingoSet to use for the BingoCards
+     * @param size        the size for the BingoCards
+     * @param count       the number of BingoCards
+     * @param addFreeTile wether to add a free BingoTile (only works for odd sizes)
+     * @param path        the path to save the PDF to
+     * @param threads     the number of threads to render on
+     * @param merge       wether to merge the shards into one PDF
+     * @return a report of the print run, or {@code null} if the BingoSet doesn't
+     *         contain enough entries
+     * @throws IOException if an IO exception occurs while creating the PDFs
+     */
+    public static PrintReport printParallel(String setName, int size, int count, boolean addFreeTile, String path,
+            int threads, boolean merge) throws IOException {
+        return printParallel(setName, size, count, addFreeTile, path, threads, merge, false);
+    }
 
-        for (int i = 0; i < 6; i++) {
-            contentStream.beginText();
-            contentStream.newLineAtOffset(X_VALUES[i % 2], Y_VALUES[i % 3]);
-            for (String s : formatForPDF(toConsolePrint(cards[i])).split("\n")) {
-                contentStream.showText(s);
-                contentStream.newLineAtOffset(0, -fontSize);
+    /**
+     * Creates the specified number of new BingoCards from the specified BingoSet
+     * and prints them like {@code printParallel()}, with all shards sharing one
+     * UniqueCards, so no BingoCard is printed twice across the whole run.
+     * 
+     * @param setName     the BingoSet to use for the BingoCards
+     * @param size        the size for the BingoCards
+     * @param count       the number of BingoCards
+     * @param addFreeTile wether to add a free BingoTile (only works for odd sizes)
+     * @param path        the path to save the PDF to
+     * @param threads     the number of threads to render on
+     * @param merge       wether to merge the shards into one PDF
+     * @param sameTerms   wether BingoCards with the same texts in a different
+     *                    arrangement count as duplicates, too
+     * @return a report of the print run, or {@code null} if the BingoSet doesn't
+     *         contain enough entries
+     * @throws IOException              if an IO exception occurs while creating
+     *                                  the PDFs
+     * @throws IllegalArgumentException if the BingoSet doesn't allow that many
+     *                                  distinct BingoCards
+     */
+    public static PrintReport printParallel(String setName, int size, int count, boolean addFreeTile, String path,
+            int threads, boolean merge, boolean sameTerms) throws IOException {
+        CardGenerator generator = CardGenerator.forSet(setName, size, addFreeTile);
+        if (generator == null)
+            return null;
+        if (count > generator.distinctCards(sameTerms))
+            throw new IllegalArgumentException(
+                    "The BingoSet only allows " + (long) generator.distinctCards(sameTerms) + " distinct BingoCards");
+        UniqueCards unique = new UniqueCards(sameTerms, count, false);
+        return printShards(setName, generator.getSnapshot(), size, count, path, threads, merge,
+                (from, n) -> generator.generateUnique(n, unique).iterator());
+    }
+
+    /**
+     * Prints the BingoCards with the indexes 0 to {@code count - 1} (see
+     * {@code CardGenerator.card()}) of the specified master seed, six per page,
+     * with the id of every BingoCard printed below it. Any of them can be created
+     * again from its id and the master seed, so claims can be checked and
+     * BingoCards reprinted without storing them. In the unlikely case that two
+     * indexes give the same BingoCard, the later one is skipped and the next index
+     * is printed instead. Which indexes are printed is decided before the shards
+     * start, so the same master seed always gives the same PDF and CardArchive,
+     * no matter how many threads print it.
+     * 
+     * @param setName     the BingoSet to use for the BingoCards
+     * @param size        the size for the BingoCards
+     * @param count       the number of BingoCards
+     * @param addFreeTile wether to add a free BingoTile (only works for odd sizes)
+     * @param path        the path to save the PDF to
+     * @param threads     the number of threads to render on
+     * @param masterSeed  the master seed of the print run
+     * @return a report of the print run, or {@code null} if the BingoSet doesn't
+     *         contain enough entries
+     * @throws IOException              if an IO exception occurs while creating
+     *                                  the PDFs
+     * @throws IllegalArgumentException if the BingoSet doesn't allow that many
+     *                                  distinct BingoCards
+     */
+    public static PrintReport printSeeded(String setName, int size, int count, boolean addFreeTile, String path,
+            int threads, long masterSeed) throws IOException {
+        return printSeeded(setName, size, count, addFreeTile, path, threads, masterSeed, true, false);
+    }
+
+    /**
+     * Prints the BingoCards of the specified master seed like
+     * {@code printSeeded()}, with the choices of {@code printParallel()} wether
+     * to merge the shards and which BingoCards count as duplicates.
+     * 
+     * @param setName     the BingoSet to use for the BingoCards
+     * @param size        the size for the BingoCards
+     * @param count       the number of BingoCards
+     * @param addFreeTile wether to add a free BingoTile (only works for odd sizes)
+     * @param path        the path to save the PDF to
+     * @param threads     the number of threads to render on
+     * @param masterSeed  the master seed of the print run
+     * @param merge       wether to merge the shards into one PDF
+     * @param sameTerms   wether BingoCards with the same texts in a different
+     *                    arrangement count as duplicates, too
+     * @return a report of the print run, or {@code null} if the BingoSet doesn't
+     *         contain enough entries
+     * @throws IOException              if an IO exception occurs while creating
+     *                                  the PDFs
+     * @throws IllegalArgumentException if the BingoSet doesn't allow that many
+     *                                  distinct BingoCards
+     */
+    public static PrintReport printSeeded(String setName, int size, int count, boolean addFreeTile, String path,
+            int threads, long masterSeed, boolean merge, boolean sameTerms) throws IOException {
+        CardGenerator generator = CardGenerator.forSet(setName, size, addFreeTile);
+        if (generator == null)
+            return null;
+        long[] indexes = generator.seededIndexes(masterSeed, 0, count, new UniqueCards(sameTerms, count, false));
+        return printShards(setName, generator.getSnapshot(), size, count, path, threads, merge,
+                (from, n) -> Arrays.stream(indexes, from, from + n).mapToObj(index -> generator.card(masterSeed, index))
+                        .iterator());
+    }
+
+    /**
+     * Creates the BingoCards for one shard of a print run.
+     */
+    private interface ShardCards {
+        Iterator<BingoCard> create(int fromCard, int count);
+    }
+
+    /**
+     * Splits the pages of a print run into one contiguous range per shard, prints
+     * every shard into its own PDF on a thread of its own, and merges the shards
+     * into one PDF in shard order if requested. A single shard is printed into
+     * the final PDF right away. All shards print from the same version of the
+     * BingoSet. Every shard records its BingoCards in a CardArchive of its own,
+     * which are always merged, so the numbers in the CardArchive count the
+     * BingoCards of the whole print run.
+     */
+    private static PrintReport printShards(String setName, SetVersion version, int size, int count, String path,
+            int threads, boolean merge, ShardCards cards) throws IOException {
+        long start = System.nanoTime();
+        warmUpFont(CardForms.FONT, version.getEntries());
+        String prefix = path + "/" + setName + "-BingoCards-Size" + size + "-" + count + "-"
+                + System.currentTimeMillis();
+        int totalPages = (count + 5) / 6;
+        int shards = Math.max(1, Math.min(threads, totalPages));
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        String[] files = new String[shards];
+        List<Path> archives = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            int fromCard = 6 * (int) ((long) totalPages * i / shards);
+            int toCard = Math.min(count, 6 * (int) ((long) totalPages * (i + 1) / shards));
+            String file = merge && shards == 1 ? prefix + ".pdf" : prefix + "-part" + (i + 1) + ".pdf";
+            files[i] = file;
+            archives.add(Path.of(shards == 1 ? prefix + ".cards" : prefix + "-part" + (i + 1) + ".cards"));
+            Path archive = archives.get(i);
+            tasks.add(() -> {
+                try (CardArchive.Writer writer = CardArchive.create(archive, setName, size)) {
+                    int pages = printCards(cards.create(fromCard, toCard - fromCard), file, writer);
+                    finish(writer, archive.toString());
+                    return pages;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(shards);
+        int pages = 0;
+        try {
+            for (Future<Integer> result : executor.invokeAll(tasks)) {
+                pages += result.get();
             }
-            contentStream.endText();
+            if (shards > 1) {
+                Metrics.Sample sample = Metrics.FILE_WRITE.start();
+                CardArchive.merge(archives, Path.of(prefix + ".cards"));
+                sample.end(prefix + ".cards");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while printing", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            if (shards > 1) {
+                for (Path archive : archives) {
+                    Files.deleteIfExists(archive);
+                }
+            }
+        }
+        if (!merge)
+            return new PrintReport(prefix + "-part*.pdf", count, pages, System.nanoTime() - start);
+        if (shards == 1)
+            return new PrintReport(prefix + ".pdf", count, pages, System.nanoTime() - start);
+        PDFMergerUtility merger = new PDFMergerUtility();
+        for (String file : files) {
+            merger.addSource(new File(file));
         }
+        merger.setDestinationFileName(prefix + ".pdf");
+        Metrics.Sample sample = Metrics.FILE_WRITE.start();
+        merger.mergeDocuments(MemoryUsageSetting.setupMixed(BULK_MAIN_MEMORY));
+        sample.end(prefix + ".pdf");
+        for (String file : files) {
+            new File(file).delete();
+        }
+        return new PrintReport(prefix + ".pdf", count, pages, System.nanoTime() - start);
+    }
 
-        contentStream.close();
+    /**
+     * Prints BingoCards into one PDF, six per page, and records them in a
+     * CardArchive.
+     * 
+     * @param cards   the BingoCards to print
+     * @param file    the file to save the PDF to
+     * @param archive the CardArchive to record the BingoCards in
+     * @return the number of pages printed
+     * @throws IOException if an IO exception occurs while creating the PDF or
+     *                     writing the CardArchive
+     */
+    private static int printCards(Iterator<BingoCard> cards, String file, CardArchive.Writer archive)
+            throws IOException {
+        int pages = 0;
+        try (PDDocument document = new PDDocument(MemoryUsageSetting.setupMixed(BULK_MAIN_MEMORY))) {
+            BingoCard[] page = new BingoCard[6];
+            CardForms forms = new CardForms(document);
+            while (cards.hasNext()) {
+                int n = 0;
+                while (n < 6 && cards.hasNext()) {
+                    page[n] = cards.next();
+                    archive.write(page[n++]);
+                }
+                addCardPage(document, forms, n == 6 ? page : Arrays.copyOf(page, n));
+                pages++;
+            }
+            save(document, file);
+        }
+        return pages;
+    }
 
-        document.save(path + "/" + setName + "-BingoCards-Size" + size + "-" + System.currentTimeMillis() + ".pdf");
-        document.close();
+    /**
+     * Saves the document, timing it as a file write.
+     * 
+     * @param document the document
+     * @param file     the file to save it to
+     * @throws IOException if an IO exception occurs while saving
+     */
+    private static void save(PDDocument document, String file) throws IOException {
+        Metrics.Sample sample = Metrics.FILE_WRITE.start();
+        document.save(file);
+        sample.end(file);
     }
 
-    private static int findmax(int[] vals) {
-        if (vals.length == 0)
-            return -1;
-        int max = vals[0];
-        for (int i : vals) {
-            if (i > max)
-                max = i;
+    /**
+     * Finishes a CardArchive, timing it as a file write.
+     * 
+     * @param archive the CardArchive
+     * @param file    the file it is saved to
+     * @throws IOException if an IO exception occurs while finishing it
+     */
+    private static void finish(CardArchive.Writer archive, String file) throws IOException {
+        Metrics.Sample sample = Metrics.FILE_WRITE.start();
+        archive.finish();
+        sample.end(file);
+    }
+
+    /**
+     * Encodes every character that can occur on the BingoCards once, including
+     * the ids printed below them, so the font's internal encoding cache is
+     * complete before several threads use the shared standard font at the same
+     * time, and is only read from then on.
+     * 
+     * @param font  the font to warm up
+     * @param texts the texts that will be printed
+     */
+    private static void warmUpFont(PDFont font, List<String> texts) {
+        Set<Integer> seen = new HashSet<>();
+        StringBuilder all = new StringBuilder("+-|x FREESPACE ID 0123456789ABCDEF");
+        for (String text : texts) {
+            all.append(text);
         }
-        return max;
+        all.codePoints().filter(seen::add).forEach(c -> {
+            try {
+                font.encode(new String(Character.toChars(c)));
+            } catch (IOException | IllegalArgumentException e) {
+                // characters the font can't encode fail the same way when printing
+            }
+        });
     }
 
-    private static void addBarriers(PDPageContentStream contentStream) throws IOException{
-        contentStream.setFont(PDType1Font.COURIER, 10);
-
-        contentStream.beginText();
-        contentStream.newLineAtOffset(0, 264);
-        contentStream.showText("-");
-        contentStream.newLineAtOffset(0, 264);
-        contentStream.showText("-");
-        contentStream.newLineAtOffset(605, 0);
-        contentStream.showText("-");
-        contentStream.newLineAtOffset(0, -264);
-        contentStream.showText("-");
-        contentStream.endText();
-
-        contentStream.beginText();
-        contentStream.newLineAtOffset(300, 2);
-        contentStream.showText("|");
-        contentStream.newLineAtOffset(0, 782);
-        contentStream.showText("|");
-        contentStream.endText();
+    /**
+     * Adds a page with up to six BingoCards to the document. The content stream is
+     * closed before returning, which hands the finished page to the document's
+     * storage.
+     * 
+     * @param document the document to add the page to
+     * @param forms    the CardForms of the document
+     * @param cards    the BingoCards to print, at most six
+     * @throws IOException if an IO exception occurs while creating the page
+     */
+    private static void addCardPage(PDDocument document, CardForms forms, BingoCard[] cards) throws IOException {
+        Metrics.Sample sample = Metrics.PAGE_RENDER.start();
+        PDFont font = CardForms.FONT;
+        CardLayout[] layouts = new CardLayout[cards.length];
+        float maxWidth = 0;
+        int maxHeight = 0;
+        for (int i = 0; i < cards.length; i++) {
+            layouts[i] = CardLayout.of(cards[i], false);
+            maxWidth = Math.max(maxWidth, layouts[i].getWidth(font));
+            maxHeight = Math.max(maxHeight, layouts[i].getHeight() + (cards[i].getId() != 0 ? 1 : 0));
+        }
+        int widthLimit = (int) (PAGE_SIZE_X * CARD_WIDTH / maxWidth);
+        int heightLimit = (int) ((PAGE_SIZE_Y / (maxHeight * 2)) * 0.65f);
+        int fontSize = Math.min(widthLimit, heightLimit);
+
+        PDPage page = forms.newPage();
+
+        PDPageContentStream contentStream = new PDPageContentStream(document, page);
+
+        forms.drawBarriers(contentStream);
+
+        for (int i = 0; i < cards.length; i++) {
+            int x = X_VALUES[i % 2];
+            int y = Y_VALUES[i % 3];
+            forms.drawCard(contentStream, layouts[i], x, y, fontSize);
+            if (cards[i].getId() != 0) {
+                contentStream.beginText();
+                contentStream.setFont(font, fontSize);
+                contentStream.newLineAtOffset(x, y - layouts[i].getHeight() * fontSize);
+                contentStream.showText("ID " + CardId.format(cards[i].getId()));
+                contentStream.endText();
+            }
+        }
+
+        contentStream.close();
+        sample.end();
     }
 
     public static void main(String[] args) {
@@ -481,6 +745,8 @@ public class Printing {
             }
         } else {
             try {
+                boolean metrics = Arrays.asList(args).contains("--metrics");
+                Metrics.setEnabled(metrics);
                 if (args.length < 2) {
                     System.out.println("Please specify the BingoSet you want to use.");
                     System.out.println("Available BingoSets:");
@@ -527,21 +793,51 @@ public class Printing {
                     System.out.println("The path you specified isn't a directory.");
                     return;
                 }
-                if (args.length > 4 && args[4].equals("--no-free-tile"))
-                    addFreeTile = false;
+                int count = 6;
+                int threads = 1;
+                boolean merge = true;
+                boolean sameTerms = false;
+                Long seed = null;
+                for (int j = 4; j < args.length; j++) {
+                    if (args[j].equals("--no-free-tile"))
+                        addFreeTile = false;
+                    if (args[j].startsWith("--count="))
+                        count = Integer.parseInt(args[j].substring("--count=".length()));
+                    if (args[j].startsWith("--threads="))
+                        threads = Integer.parseInt(args[j].substring("--threads=".length()));
+                    if (args[j].equals("--no-merge"))
+                        merge = false;
+                    if (args[j].equals("--unique-terms"))
+                        sameTerms = true;
+                    if (args[j].startsWith("--seed="))
+                        seed = Long.parseLong(args[j].substring("--seed=".length()));
+                }
                 if (args[0].matches("(?i)one")) {
                     printOne(setName, size, addFreeTile, path);
                     System.out.println("Created a PDF at" + path);
                 } else if (args[0].matches("(?i)six")) {
                     printSix(setName, size, addFreeTile, path);
                     System.out.println("Created a PDF at " + path);
+                } else if (args[0].matches("(?i)bulk")) {
+                    if (seed != null)
+                        System.out.println(printSeeded(setName, size, count, addFreeTile, path, threads, seed,
+                                merge, sameTerms));
+                    else if (threads > 1)
+                        System.out.println(printParallel(setName, size, count, addFreeTile, path, threads, merge,
+                                sameTerms));
+                    else
+                        System.out.println(printBulk(setName, size, count, addFreeTile, path, sameTerms));
                 } else {
-                    System.out.println("Usage: 'one'|'six', path, size, [--no-free-tile]");
+                    System.out.println("Usage: 'one'|'six'|'bulk', path, size, [--no-free-tile], [--count=n], "
+                            + "[--threads=n], [--no-merge], [--unique-terms], [--seed=n], [--metrics]");
                 }
+                if (metrics)
+                    System.out.print(Metrics.snapshot());
 
             } catch (Exception e) {
                 e.printStackTrace();
-                System.out.println("Usage: 'one'|'six', setName, size, path, [--no-free-tile]");
+                System.out.println("Usage: 'one'|'six'|'bulk', setName, size, path, [--no-free-tile], [--count=n], "
+                        + "[--threads=n], [--no-merge], [--unique-terms], [--seed=n], [--metrics]");
             }
         }
     }
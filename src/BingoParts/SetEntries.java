@@ -0,0 +1,25 @@
+package BingoParts;
+
+/**
+ * Random access to the entries of a BingoSet, without requiring them to be held
+ * in a List.
+ * 
+ * @author Lucas Schlierf
+ */
+public interface SetEntries {
+
+    /**
+     * Returns the number of entries.
+     * 
+     * @return the number of entries
+     */
+    int size();
+
+    /**
+     * Returns the specified entry.
+     * 
+     * @param index the index of the entry, from 0 (inclusive), to size (exclusive)
+     * @return the entry
+     */
+    String get(int index);
+}
@@ -0,0 +1,336 @@
+package BingoParts;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Imports BingoSets from large word lists. The source is read line by line and
+ * every entry is written out as soon as it is known to be new, so only one entry
+ * is held at a time, no matter how large the source is.
+ * <p>
+ * Every entry is trimmed and brought into Unicode normalization form NFC, so the
+ * same text typed or exported differently is recognized as the same entry.
+ * Blank entries are dropped. Duplicates are found with a hash table of the
+ * entries kept, which only stores a 64-bit hash of every entry and where it was
+ * written to, not the entry itself. If the hashes of two entries match, the
+ * entry written before is read back and compared, so distinct entries are never
+ * dropped, even if their hashes collide. So the memory needed only grows with
+ * the number of distinct entries, by at most 56 bytes each, independent of
+ * their length and of the size of the source.
+ * <p>
+ * The BingoSet is written to a hidden file first and moved into place when it is
+ * complete, so a failed import never leaves a partial BingoSet behind, and
+ * nobody reading it sees a partial one.
+ *
+ * @author Lucas Schlierf
+ */
+public final class SetImporter {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    /**
+     * This class only has static Methods, so it shouldn't be instanciated.
+     */
+    private SetImporter() {
+    }
+
+    /**
+     * Summarizes a finished import.
+     */
+    public static final class Result {
+        private final long lines;
+        private final long entries;
+        private final long blanks;
+        private final long duplicates;
+
+        private Result(long lines, long entries, long blanks, long duplicates) {
+            this.lines = lines;
+            this.entries = entries;
+            this.blanks = blanks;
+            this.duplicates = duplicates;
+        }
+
+        public long getLines() {
+            return lines;
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+
+        public long getBlanks() {
+            return blanks;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Imported %d entries from %d lines (%d blank, %d duplicates)", entries, lines, blanks,
+                    duplicates);
+        }
+    }
+
+    /**
+     * Imports a new BingoSet from a UTF-8 text file with one entry per line.
+     *
+     * @param name   the name of the BingoSet
+     * @param source the text file
+     * @return what was imported, or {@code null} if a BingoSet with that name
+     *         already exists
+     * @throws IOException if an IO exception occurs while reading the source or
+     *                     writing the BingoSet
+     */
+    public static Result importSet(String name, Path source) throws IOException {
+        try (InputStream in = Files.newInputStream(source)) {
+            return importSet(name, in);
+        }
+    }
+
+    /**
+     * Imports a new BingoSet from a UTF-8 stream with one entry per line. The
+     * stream isn't closed.
+     *
+     * @param name the name of the BingoSet
+     * @param in   the stream
+     * @return what was imported, or {@code null} if a BingoSet with that name
+     *         already exists
+     * @throws IOException if an IO exception occurs while reading the stream or
+     *                     writing the BingoSet, or the stream is a weighted
+     *                     BingoSet, whose lines can't be normalized like entries
+     */
+    public static Result importSet(String name, InputStream in) throws IOException {
+        SetRegistry registry = SetRegistry.get();
+        if (registry.getPath(name) != null)
+            return null;
+        Path temp = registry.newTempFile();
+        Result result;
+        try {
+            result = copy(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE), temp);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return registry.publish(name, temp, false) ? result : null;
+    }
+
+    private static Result copy(BufferedReader reader, Path temp) throws IOException {
+        long lines = 0;
+        long blanks = 0;
+        long duplicates = 0;
+        byte[] separator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        try (EntryWriter out = new EntryWriter(temp)) {
+            EntryTable seen = new EntryTable(out);
+            String line = reader.readLine();
+            while (line != null) {
+                lines++;
+                String entry = normalize(line);
+                if (entry.isEmpty()) {
+                    blanks++;
+                } else {
+                    // the first entry written becomes the first line of the BingoSet
+                    if (seen.size() == 0 && entry.equals(WeightedSet.HEADER))
+                        throw new IOException(
+                                "Weighted BingoSets can't be imported, use BingoSets.createSet() instead");
+                    byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                    long hash = hash(bytes);
+                    int slot = seen.find(hash, bytes);
+                    if (slot < 0) {
+                        duplicates++;
+                    } else {
+                        seen.put(slot, hash, out.write(bytes), bytes.length);
+                        out.write(separator);
+                    }
+                }
+                line = reader.readLine();
+            }
+            out.finish();
+            return new Result(lines, seen.size(), blanks, duplicates);
+        }
+    }
+
+    /**
+     * Hashes the UTF-8 bytes of an entry.
+     */
+    private static long hash(byte[] bytes) {
+        long h = bytes.length;
+        for (byte b : bytes) {
+            h = (h ^ (b & 0xFF)) * MULTIPLIER;
+        }
+        return CardFingerprint.mix(h);
+    }
+
+    /**
+     * Writes the entries through a buffer into the temporary file, and reads
+     * entries written before back for comparing them. An entry is always either
+     * completely in the buffer or completely in the file.
+     */
+    private static final class EntryWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private long written;
+
+        EntryWriter(Path temp) throws IOException {
+            this.channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        /**
+         * Writes the bytes.
+         *
+         * @return the offset they were written to
+         */
+        long write(byte[] bytes) throws IOException {
+            if (buffer.remaining() < bytes.length)
+                drain();
+            long offset = written + buffer.position();
+            if (buffer.remaining() < bytes.length) {
+                // longer than the whole buffer
+                ByteBuffer large = ByteBuffer.wrap(bytes);
+                while (large.hasRemaining()) {
+                    written += channel.write(large);
+                }
+            } else {
+                buffer.put(bytes);
+            }
+            return offset;
+        }
+
+        /**
+         * Checks wether the bytes written to the specified offset are the
+         * specified bytes.
+         */
+        boolean matches(long offset, byte[] bytes) throws IOException {
+            if (offset >= written) {
+                int from = (int) (offset - written);
+                return Arrays.equals(buffer.array(), from, from + bytes.length, bytes, 0, bytes.length);
+            }
+            ByteBuffer stored = ByteBuffer.allocate(bytes.length);
+            while (stored.hasRemaining()) {
+                if (channel.read(stored, offset + stored.position()) < 0)
+                    return false;
+            }
+            return Arrays.equals(stored.array(), bytes);
+        }
+
+        void finish() throws IOException {
+            drain();
+            channel.force(false);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Trims the specified line and brings it into normalization form NFC.
+     *
+     * @param line the line
+     * @return the entry, empty if the line is blank
+     */
+    static String normalize(String line) {
+        String entry = line.strip();
+        return Normalizer.isNormalized(entry, Normalizer.Form.NFC) ? entry
+                : Normalizer.normalize(entry, Normalizer.Form.NFC).strip();
+    }
+
+    /**
+     * A set of the entries kept, stored unboxed as their hashes, offsets and
+     * lengths in the temporary file, with open addressing and linear probing.
+     */
+    private static final class EntryTable {
+        private final EntryWriter entries;
+        private long[] hashes = new long[1 << 10];
+        private long[] offsets = new long[1 << 10];
+        private int[] lengths = new int[1 << 10];
+        private boolean[] used = new boolean[1 << 10];
+        private int size;
+
+        EntryTable(EntryWriter entries) {
+            this.entries = entries;
+        }
+
+        /**
+         * Looks for an entry, comparing the entries kept before with it if their
+         * hashes match.
+         *
+         * @return the free slot to put the entry in, or {@code -1} if the entry
+         *         has been kept before
+         */
+        int find(long hash, byte[] bytes) throws IOException {
+            int mask = used.length - 1;
+            int slot = (int) hash & mask;
+            while (used[slot]) {
+                if (hashes[slot] == hash && lengths[slot] == bytes.length && entries.matches(offsets[slot], bytes))
+                    return -1;
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Puts an entry into the slot returned by {@code find()}.
+         */
+        void put(int slot, long hash, long offset, int length) {
+            used[slot] = true;
+            hashes[slot] = hash;
+            offsets[slot] = offset;
+            lengths[slot] = length;
+            if (++size > used.length / 4 * 3)
+                grow();
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void grow() {
+            long[] oldHashes = hashes;
+            long[] oldOffsets = offsets;
+            int[] oldLengths = lengths;
+            boolean[] oldUsed = used;
+            hashes = new long[oldUsed.length * 2];
+            offsets = new long[oldUsed.length * 2];
+            lengths = new int[oldUsed.length * 2];
+            used = new boolean[oldUsed.length * 2];
+            int mask = used.length - 1;
+            for (int i = 0; i < oldUsed.length; i++) {
+                if (!oldUsed[i])
+                    continue;
+                int slot = (int) oldHashes[i] & mask;
+                while (used[slot]) {
+                    slot = (slot + 1) & mask;
+                }
+                used[slot] = true;
+                hashes[slot] = oldHashes[i];
+                offsets[slot] = oldOffsets[i];
+                lengths[slot] = oldLengths[i];
+            }
+        }
+    }
+}
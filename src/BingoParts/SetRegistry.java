@@ -0,0 +1,500 @@
+package BingoParts;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caches the BingoSets in storage: which BingoSets exist, where they are stored,
+ * and the entries of recently used BingoSets. A WatchService thread keeps the
+ * cache up to date with changes made on disk. If the directory can't be watched,
+ * the cache is revalidated after {@code REFRESH_INTERVAL} instead.
+ * <p>
+ * Everything cached is held in one immutable State, which is replaced as a
+ * whole, so readers never block and always see a consistent State. Only
+ * changes, like caching a freshly read BingoSet, take a lock. BingoSets are
+ * changed copy-on-write: the new version is written to a hidden file next to
+ * the BingoSet and moved over it atomically, so a reader opening the file
+ * always gets either the old or the new version, never a missing or partial
+ * one. Every version read gets an id, see SetVersion.
+ * <p>
+ * The TermDictionary of a BingoSet belongs to the file it was read from: all
+ * versions read from the same file share one, so BingoCards of a game can be
+ * created by several CardGenerators, while a changed or deleted BingoSet
+ * starts over with a new one, so old terms don't pile up.
+ *
+ * @author Lucas Schlierf
+ */
+final class SetRegistry {
+
+    /**
+     * Upper bound for the total number of entries kept in the cache.
+     */
+    static final int MAX_CACHED_ENTRIES = 1_000_000;
+
+    /**
+     * How long the cache is trusted without a WatchService, in milliseconds.
+     */
+    static final long REFRESH_INTERVAL = 1000;
+
+    private static SetRegistry instance;
+
+    private final File directory;
+    private final AtomicReference<State> state;
+    private final AtomicLong nextVersion;
+    private final Object writeLock;
+    private final Map<String, Terms> dictionaries;
+    private volatile boolean watching;
+
+    /**
+     * The names and paths of all BingoSets at one point in time.
+     */
+    private static final class Index {
+        private final List<String> names;
+        private final Map<String, Path> paths;
+        private final long created;
+
+        Index(List<String> names, Map<String, Path> paths) {
+            this.names = names;
+            this.paths = paths;
+            this.created = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The TermDictionary of a BingoSet, and the file it belongs to.
+     */
+    private static final class Terms {
+        private final Object fileKey;
+        private final long fileSize;
+        private final long fileModified;
+        private final TermDictionary dictionary;
+
+        Terms(BasicFileAttributes file) {
+            this.fileKey = file.fileKey();
+            this.fileSize = file.size();
+            this.fileModified = file.lastModifiedTime().toMillis();
+            this.dictionary = new TermDictionary();
+        }
+
+        boolean matches(BasicFileAttributes file) {
+            return Objects.equals(fileKey, file.fileKey()) && fileSize == file.size()
+                    && fileModified == file.lastModifiedTime().toMillis();
+        }
+    }
+
+    /**
+     * The Index and the cached versions of BingoSets at one point in time. Never
+     * changed after it is published.
+     */
+    private static final class State {
+        private final Index index;
+        private final Map<String, SetVersion> versions;
+
+        State(Index index, Map<String, SetVersion> versions) {
+            this.index = index;
+            this.versions = versions;
+        }
+    }
+
+    private SetRegistry(File directory) {
+        this.directory = directory;
+        this.nextVersion = new AtomicLong();
+        this.writeLock = new Object();
+        this.dictionaries = new ConcurrentHashMap<>();
+        this.state = new AtomicReference<>(new State(scan(), Map.of()));
+        startWatching();
+    }
+
+    /**
+     * Returns the SetRegistry of the BingoSets directory, creating it on first
+     * use. The directory is the one given with
+     * {@code BingoSets.DIRECTORY_PROPERTY}, or else the Sets folder next to the
+     * classes.
+     *
+     * @return the SetRegistry
+     */
+    static synchronized SetRegistry get() {
+        if (instance == null) {
+            String directory = System.getProperty(BingoSets.DIRECTORY_PROPERTY);
+            instance = new SetRegistry(directory != null ? new File(directory)
+                    : new File(SetRegistry.class.getClassLoader().getResource("BingoParts/Sets").getPath()));
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the directory the BingoSets are stored in.
+     *
+     * @return the directory
+     */
+    File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the names of all BingoSets.
+     *
+     * @return an unmodifiable List of all BingoSet names
+     */
+    List<String> getNames() {
+        return currentState().index.names;
+    }
+
+    /**
+     * Returns the path of the specified BingoSet.
+     *
+     * @param name the name of the BingoSet
+     * @return the path, or {@code null} if there is no such BingoSet
+     */
+    Path getPath(String name) {
+        return currentState().index.paths.get(name);
+    }
+
+    /**
+     * Returns the entries of the specified BingoSet, reading it from disk if it
+     * isn't cached.
+     *
+     * @param name the name of the BingoSet
+     * @return an unmodifiable List of all entries, empty if there is no such
+     *         BingoSet
+     * @throws IOException if an IO exception occurs while reading the BingoSet
+     */
+    List<String> getEntries(String name) throws IOException {
+        SetVersion version = getVersion(name);
+        return version == null ? Collections.emptyList() : version.getEntries();
+    }
+
+    /**
+     * Returns the entries of the specified BingoSet with their weights and
+     * categories, reading it from disk if it isn't cached.
+     *
+     * @param name the name of the BingoSet
+     * @return the WeightedSet, or {@code null} if there is no such BingoSet
+     * @throws IOException if an IO exception occurs while reading the BingoSet,
+     *                     or the weights in it are invalid
+     */
+    WeightedSet getWeightedSet(String name) throws IOException {
+        SetVersion version = getVersion(name);
+        return version == null ? null : version.getSet();
+    }
+
+    /**
+     * Returns the current version of the specified BingoSet, reading it from
+     * disk if it isn't cached. Never blocks if it is cached.
+     *
+     * @param name the name of the BingoSet
+     * @return the SetVersion, or {@code null} if there is no such BingoSet
+     * @throws IOException if an IO exception occurs while reading the BingoSet,
+     *                     or the weights in it are invalid
+     */
+    SetVersion getVersion(String name) throws IOException {
+        State current = currentState();
+        SetVersion cached = current.versions.get(name);
+        if (cached != null) {
+            Metrics.SET_CACHE_HITS.increment();
+            cached.touch();
+            return cached;
+        }
+        Path path = current.index.paths.get(name);
+        if (path == null)
+            return null;
+        Metrics.SET_CACHE_MISSES.increment();
+        SetVersion loaded = read(name, path);
+        synchronized (writeLock) {
+            State now = state.get();
+            if (now.index != current.index)
+                return loaded;
+            SetVersion raced = now.versions.get(name);
+            if (raced != null)
+                return raced;
+            Map<String, SetVersion> versions = new HashMap<>(now.versions);
+            versions.put(name, loaded);
+            evict(versions, loaded);
+            state.set(new State(now.index, Collections.unmodifiableMap(versions)));
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the TermDictionary of the specified BingoSet without reading it.
+     *
+     * @param name the name of the BingoSet
+     * @return the TermDictionary, or {@code null} if there is no such BingoSet
+     * @throws IOException if the attributes of the BingoSet can't be read
+     */
+    TermDictionary getDictionary(String name) throws IOException {
+        Path path = getPath(name);
+        return path == null ? null : dictionary(name, Files.readAttributes(path, BasicFileAttributes.class));
+    }
+
+    private TermDictionary dictionary(String name, BasicFileAttributes file) {
+        return dictionaries.compute(name, (n, terms) -> terms != null && terms.matches(file) ? terms : new Terms(file))
+                .dictionary;
+    }
+
+    private SetVersion read(String name, Path path) throws IOException {
+        Metrics.Sample sample = Metrics.SET_LOAD.start();
+        // taken before reading, so a version read from a file replaced in between
+        // is recognized as outdated later
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line = br.readLine();
+            while (line != null) {
+                lines.add(line);
+                line = br.readLine();
+            }
+        }
+        sample.end(name);
+        try {
+            return new SetVersion(name, nextVersion.incrementAndGet(), WeightedSet.parse(lines),
+                    dictionary(name, attributes), attributes);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid BingoSet " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a hidden file in the BingoSets directory to write a new version of
+     * a BingoSet to, before it is published with {@code publish()}. Its name
+     * starts with a dot, so it is never taken for a BingoSet.
+     *
+     * @return the path of the file
+     * @throws IOException if the file can't be created
+     */
+    Path newTempFile() throws IOException {
+        return Files.createTempFile(directory.toPath(), ".set-", ".tmp");
+    }
+
+    /**
+     * Publishes a new version of a BingoSet written to a file from
+     * {@code newTempFile()}, by moving it into place atomically. The file is
+     * deleted if it isn't published.
+     *
+     * @param name    the name of the BingoSet
+     * @param temp    the file holding the new version
+     * @param replace {@code true} to replace an existing BingoSet, {@code false}
+     *                to create a new one
+     * @return {@code false} if the BingoSet doesn't exist but {@code replace} is
+     *         set, or exists but {@code replace} isn't set, {@code true} if it
+     *         was published
+     * @throws IOException if the file can't be moved
+     */
+    boolean publish(String name, Path temp, boolean replace) throws IOException {
+        synchronized (writeLock) {
+            try {
+                Path existing = scan().paths.get(name);
+                if (replace != (existing != null))
+                    return false;
+                if (replace)
+                    Files.move(temp, existing, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                else
+                    Files.move(temp, directory.toPath().resolve(name + ".txt"));
+            } catch (FileAlreadyExistsException e) {
+                return false;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            refresh(Set.of(name));
+            return true;
+        }
+    }
+
+    /**
+     * Deletes the specified BingoSet. Readers that already hold a version of it
+     * keep it.
+     *
+     * @param name the name of the BingoSet
+     * @return {@code true} if the BingoSet could be deleted
+     */
+    boolean delete(String name) {
+        synchronized (writeLock) {
+            Path path = scan().paths.get(name);
+            if (path == null || !path.toFile().delete())
+                return false;
+            refresh(Set.of(name));
+            return true;
+        }
+    }
+
+    /**
+     * Forgets everything cached about the specified BingoSet, unless it is still
+     * what is on disk. Called after the BingoSet changed, so the change is
+     * visible right away.
+     *
+     * @param name the name of the BingoSet
+     */
+    void invalidate(String name) {
+        synchronized (writeLock) {
+            refresh(Set.of(name));
+        }
+    }
+
+    /**
+     * Rescans the directory and forgets all cached versions that aren't what is
+     * on disk anymore.
+     */
+    void invalidateAll() {
+        synchronized (writeLock) {
+            refresh(null);
+        }
+    }
+
+    /**
+     * Rescans the directory and publishes a new State without the outdated
+     * versions among the specified BingoSets, or among all if {@code null}. Has
+     * to be called holding the write lock.
+     */
+    private void refresh(Set<String> changed) {
+        Index index = scan();
+        Map<String, SetVersion> versions = new HashMap<>(state.get().versions);
+        versions.entrySet().removeIf(e -> (changed == null || changed.contains(e.getKey()))
+                && !isCurrent(e.getValue(), index.paths.get(e.getKey())));
+        dictionaries.entrySet().removeIf(e -> (changed == null || changed.contains(e.getKey()))
+                && !isCurrent(e.getValue(), index.paths.get(e.getKey())));
+        state.set(new State(index, Collections.unmodifiableMap(versions)));
+    }
+
+    private static boolean isCurrent(SetVersion version, Path path) {
+        BasicFileAttributes file = attributes(path);
+        return file != null && version.matches(file);
+    }
+
+    private static boolean isCurrent(Terms terms, Path path) {
+        BasicFileAttributes file = attributes(path);
+        return file != null && terms.matches(file);
+    }
+
+    private static BasicFileAttributes attributes(Path path) {
+        if (path == null)
+            return null;
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private State currentState() {
+        State current = state.get();
+        if (!watching && System.currentTimeMillis() - current.index.created > REFRESH_INTERVAL) {
+            invalidateAll();
+            current = state.get();
+        }
+        return current;
+    }
+
+    /**
+     * Evicts the least recently used BingoSets until the cache is small enough
+     * again. Always keeps the specified version.
+     */
+    private static void evict(Map<String, SetVersion> versions, SetVersion keep) {
+        long cached = 0;
+        for (SetVersion version : versions.values()) {
+            cached += version.getSet().size();
+        }
+        while (cached > MAX_CACHED_ENTRIES && versions.size() > 1) {
+            Map.Entry<String, SetVersion> oldest = null;
+            for (Map.Entry<String, SetVersion> entry : versions.entrySet()) {
+                if (entry.getValue() != keep
+                        && (oldest == null || entry.getValue().getLastUsed() < oldest.getValue().getLastUsed()))
+                    oldest = entry;
+            }
+            cached -= oldest.getValue().getSet().size();
+            versions.remove(oldest.getKey());
+        }
+    }
+
+    private Index scan() {
+        File[] files = directory.listFiles();
+        List<String> names = new ArrayList<>();
+        Map<String, Path> paths = new HashMap<>();
+        if (files != null) {
+            for (File f : files) {
+                String name = nameOf(f.getName());
+                if (f.getName().isBlank() || name.isBlank() || f.getName().endsWith(CompiledSet.EXTENSION))
+                    continue;
+                names.add(name);
+                paths.putIfAbsent(name, f.toPath().toAbsolutePath());
+            }
+        }
+        return new Index(Collections.unmodifiableList(names), paths);
+    }
+
+    /**
+     * Extracts the BingoSet name from a file name.
+     *
+     * @param fileName the file name
+     * @return the BingoSet name
+     */
+    static String nameOf(String fileName) {
+        String[] parts = fileName.split("\\.");
+        return parts.length == 0 ? "" : parts[0];
+    }
+
+    private void startWatching() {
+        WatchService watchService;
+        try {
+            watchService = directory.toPath().getFileSystem().newWatchService();
+            directory.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            return;
+        }
+        Thread watcher = new Thread(() -> watch(watchService), "BingoSets-watcher");
+        watcher.setDaemon(true);
+        watching = true;
+        watcher.start();
+    }
+
+    private void watch(WatchService watchService) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean overflow = false;
+                List<String> changed = new ArrayList<>();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        overflow = true;
+                    else if (!event.context().toString().endsWith(CompiledSet.EXTENSION))
+                        changed.add(nameOf(event.context().toString()));
+                }
+                if (overflow) {
+                    invalidateAll();
+                } else {
+                    for (String name : changed) {
+                        invalidate(name);
+                    }
+                }
+                if (!key.reset())
+                    break;
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watching = false;
+        }
+    }
+}
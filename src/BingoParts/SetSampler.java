@@ -0,0 +1,328 @@
+package BingoParts;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Draws a few distinct entries from a BingoSet file in a single pass, without
+ * loading the BingoSet. Only the drawn entries are kept and decoded, so the heap
+ * needed only depends on the number of entries drawn, not on the size of the
+ * BingoSet.
+ * <p>
+ * If the number of entries is unknown, the entries are drawn with reservoir
+ * sampling (Li's Algorithm L), which jumps from one replaced entry straight to
+ * the next, so it only needs random numbers for the entries it keeps. If the
+ * number is known, the positions are chosen up front and the pass stops right
+ * after the last of them. The number of entries of a file is remembered after
+ * the first pass, as long as the file's size and modification time don't
+ * change.
+ * <p>
+ * Either way, every set of entries is equally likely, and the entries are
+ * shuffled afterwards, so the result has the same distribution as drawing the
+ * entries from the loaded BingoSet. Lines are split like
+ * {@code BufferedReader.readLine()} splits them.
+ *
+ * @author Lucas Schlierf
+ */
+public final class SetSampler {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int UNDECIDED = -2;
+    private static final Map<Path, long[]> COUNTS = new ConcurrentHashMap<>();
+
+    /**
+     * This class only has static Methods, so it shouldn't be instanciated.
+     */
+    private SetSampler() {
+    }
+
+    /**
+     * Draws the specified number of distinct entries from a BingoSet file.
+     *
+     * @param file   the BingoSet file
+     * @param k      the number of entries to draw
+     * @param random the source of randomness
+     * @return the entries in random order, fewer than {@code k} if the file
+     *         doesn't contain enough entries
+     * @throws IOException if an IO exception occurs while reading the file
+     */
+    public static List<String> sample(Path file, int k, SplittableRandom random) throws IOException {
+        long[] known = COUNTS.get(file);
+        if (known != null && known[0] == Files.size(file) && known[1] == Files.getLastModifiedTime(file).toMillis())
+            return sample(file, k, known[2], random);
+        return reservoir(file, k, random);
+    }
+
+    private static List<String> reservoir(Path file, int k, SplittableRandom random) throws IOException {
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Reservoir reservoir = new Reservoir(k, random);
+        long count = scan(file, reservoir);
+        COUNTS.put(file, new long[] { size, modified, count });
+        return reservoir.result(random);
+    }
+
+    /**
+     * Draws the specified number of distinct entries from a BingoSet file with a
+     * known number of entries.
+     *
+     * @param file   the BingoSet file
+     * @param k      the number of entries to draw
+     * @param count  the number of entries in the file
+     * @param random the source of randomness
+     * @return the entries in random order, fewer than {@code k} if the file
+     *         doesn't contain enough entries
+     * @throws IOException if an IO exception occurs while reading the file
+     */
+    public static List<String> sample(Path file, int k, long count, SplittableRandom random) throws IOException {
+        if (count <= k)
+            return reservoir(file, k, random);
+        Selection selection = new Selection(k, count, random);
+        scan(file, selection);
+        if (selection.found < k) {
+            // the file has fewer entries than claimed
+            COUNTS.remove(file);
+            return reservoir(file, k, random);
+        }
+        return selection.result(random);
+    }
+
+    /**
+     * Checks wether a BingoSet file is in the weighted format of WeightedSet,
+     * which can't be sampled line by line.
+     *
+     * @param file the BingoSet file
+     * @return {@code true} if the file starts with {@code WeightedSet.HEADER}
+     * @throws IOException if an IO exception occurs while reading the file
+     */
+    static boolean isWeighted(Path file) throws IOException {
+        try (BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return WeightedSet.HEADER.equals(br.readLine());
+        }
+    }
+
+    /**
+     * Creates a BingoCard from entries drawn from a BingoSet file, see
+     * {@code BingoCard.sampleFromSet()}.
+     */
+    static BingoCard card(Path file, TermDictionary dictionary, int size, boolean addFreeTile) throws IOException {
+        boolean free = addFreeTile && size % 2 == 1;
+        int k = size * size - (free ? 1 : 0);
+        List<String> entries = sample(file, k, new SplittableRandom());
+        if (entries.size() < k)
+            return null;
+        int[] terms = new int[size * size];
+        int center = free ? (size / 2) * size + size / 2 : -1;
+        for (int i = 0, drawn = 0; i < terms.length; i++) {
+            terms[i] = i == center ? BingoCard.FREE : dictionary.intern(entries.get(drawn++));
+        }
+        return new BingoCard(dictionary, size, terms);
+    }
+
+    /**
+     * Decides for every line, before it is read, wether to keep it.
+     */
+    private abstract static class Sink {
+        private byte[][] kept;
+        private int[] lengths;
+        int found;
+
+        Sink(int k) {
+            kept = new byte[k][];
+            lengths = new int[k];
+        }
+
+        /**
+         * Returns the slot to keep the specified line in, or -1 to skip it.
+         */
+        abstract int slotFor(long line);
+
+        /**
+         * Returns wether no later line will be kept.
+         */
+        abstract boolean isDone(long line);
+
+        void append(int slot, ByteBuffer buffer, int from, int to) {
+            int length = to - from;
+            byte[] bytes = kept[slot];
+            if (bytes == null || lengths[slot] + length > bytes.length)
+                kept[slot] = bytes = Arrays.copyOf(bytes == null ? new byte[0] : bytes,
+                        Math.max(lengths[slot] + length, Math.max(32, (bytes == null ? 0 : bytes.length) * 2)));
+            buffer.get(from, bytes, lengths[slot], length);
+            lengths[slot] += length;
+        }
+
+        void reset(int slot) {
+            lengths[slot] = 0;
+        }
+
+        /**
+         * Decodes the kept lines and shuffles them.
+         */
+        List<String> result(SplittableRandom random) {
+            int n = Math.min(found, kept.length);
+            String[] lines = new String[n];
+            for (int i = 0; i < n; i++) {
+                lines[i] = new String(kept[i] == null ? new byte[0] : kept[i], 0, lengths[i], StandardCharsets.UTF_8);
+            }
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                String line = lines[i];
+                lines[i] = lines[j];
+                lines[j] = line;
+            }
+            return new ArrayList<>(Arrays.asList(lines));
+        }
+    }
+
+    /**
+     * Algorithm L: the first k lines fill the reservoir, after that the index of
+     * the next line to replace a random line of the reservoir is drawn directly.
+     */
+    private static final class Reservoir extends Sink {
+        private final int k;
+        private final SplittableRandom random;
+        private double w;
+        private long next;
+
+        Reservoir(int k, SplittableRandom random) {
+            super(k);
+            this.k = k;
+            this.random = random;
+            this.w = Math.exp(Math.log(nextOpen()) / k);
+            this.next = k + skip();
+        }
+
+        @Override
+        int slotFor(long line) {
+            if (line < k) {
+                found++;
+                return (int) line;
+            }
+            if (line != next)
+                return -1;
+            w *= Math.exp(Math.log(nextOpen()) / k);
+            next += 1 + skip();
+            int slot = random.nextInt(k);
+            reset(slot);
+            return slot;
+        }
+
+        @Override
+        boolean isDone(long line) {
+            return k == 0;
+        }
+
+        private long skip() {
+            double skip = Math.floor(Math.log(nextOpen()) / Math.log1p(-w));
+            return skip >= Long.MAX_VALUE / 2 || Double.isNaN(skip) ? Long.MAX_VALUE / 2 : (long) skip;
+        }
+
+        /**
+         * Returns a random number in (0, 1).
+         */
+        private double nextOpen() {
+            double u;
+            do {
+                u = random.nextDouble();
+            } while (u == 0);
+            return u;
+        }
+    }
+
+    /**
+     * Keeps k lines at positions chosen up front with Floyd's algorithm.
+     */
+    private static final class Selection extends Sink {
+        private final long[] positions;
+        private int nextPosition;
+
+        Selection(int k, long count, SplittableRandom random) {
+            super(k);
+            this.positions = new long[k];
+            LongHashSet chosen = new LongHashSet(k);
+            int n = 0;
+            for (long j = count - k; j < count; j++) {
+                long t = random.nextLong(j + 1);
+                positions[n++] = chosen.add(t) ? t : j;
+                if (positions[n - 1] == j)
+                    chosen.add(j);
+            }
+            Arrays.sort(positions);
+        }
+
+        @Override
+        int slotFor(long line) {
+            if (nextPosition == positions.length || positions[nextPosition] != line)
+                return -1;
+            found++;
+            return nextPosition++;
+        }
+
+        @Override
+        boolean isDone(long line) {
+            return nextPosition == positions.length;
+        }
+    }
+
+    /**
+     * Reads the file once, handing the bytes of every line the sink keeps to it.
+     * Wether to keep a line is decided at its first byte, so an empty last line
+     * after the final line break doesn't count, like with
+     * {@code BufferedReader}.
+     *
+     * @return the number of lines read, which is the number of entries if the
+     *         sink didn't stop early
+     */
+    private static long scan(Path file, Sink sink) throws IOException {
+        long line = 0;
+        int slot = UNDECIDED;
+        boolean afterCR = false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            byte[] bytes = buffer.array();
+            while (!sink.isDone(line) && channel.read(buffer) >= 0) {
+                buffer.flip();
+                int start = 0;
+                int end = buffer.limit();
+                for (int i = 0; i < end; i++) {
+                    byte b = bytes[i];
+                    if (b == '\n' && afterCR) {
+                        afterCR = false;
+                        start = i + 1;
+                        continue;
+                    }
+                    afterCR = false;
+                    if (slot == UNDECIDED)
+                        slot = sink.slotFor(line);
+                    if (b != '\n' && b != '\r')
+                        continue;
+                    if (slot >= 0)
+                        sink.append(slot, buffer, start, i);
+                    line++;
+                    afterCR = b == '\r';
+                    start = i + 1;
+                    slot = UNDECIDED;
+                    if (sink.isDone(line))
+                        return line;
+                }
+                if (slot >= 0 && start < end)
+                    sink.append(slot, buffer, start, end);
+                buffer.clear();
+            }
+        }
+        return slot == UNDECIDED ? line : line + 1;
+    }
+}
@@ -0,0 +1,108 @@
+package BingoParts;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One version of a BingoSet, as it was when it was read. A SetVersion never
+ * changes: if the BingoSet is changed, later reads get a new SetVersion with a
+ * new id, while everyone holding the old one, like a long print run, keeps
+ * drawing from the entries it started with.
+ *
+ * @author Lucas Schlierf
+ */
+public final class SetVersion {
+    private final String name;
+    private final long id;
+    private final WeightedSet set;
+    private final TermDictionary dictionary;
+    private final Object fileKey;
+    private final long fileSize;
+    private final long fileModified;
+    private volatile long lastUsed;
+
+    /**
+     * Creates a new SetVersion.
+     *
+     * @param name the name of the BingoSet
+     * @param id   the id of this version
+     * @param set        the entries
+     * @param dictionary the TermDictionary of the file the entries were read
+     *                   from
+     * @param file       the attributes of the file the entries were read from,
+     *                   taken before reading it
+     */
+    SetVersion(String name, long id, WeightedSet set, TermDictionary dictionary, BasicFileAttributes file) {
+        this.name = name;
+        this.id = id;
+        this.set = set;
+        this.dictionary = dictionary;
+        this.fileKey = file.fileKey();
+        this.fileSize = file.size();
+        this.fileModified = file.lastModifiedTime().toMillis();
+        this.lastUsed = System.nanoTime();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the id of this version. Ids are unique within one run of the
+     * program and increase with every version read, they aren't stored with the
+     * BingoSet.
+     *
+     * @return the id
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the entries with their weights and categories.
+     *
+     * @return the WeightedSet
+     */
+    public WeightedSet getSet() {
+        return set;
+    }
+
+    /**
+     * Returns the entries.
+     *
+     * @return an unmodifiable List of the entries
+     */
+    public List<String> getEntries() {
+        return set.getTexts();
+    }
+
+    /**
+     * Returns the TermDictionary the BingoCards created from this version use.
+     * Versions read from the same file share it.
+     *
+     * @return the TermDictionary
+     */
+    TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Checks wether this version was read from the file with the specified
+     * attributes, so it is still what is on disk. Changed BingoSets are moved in
+     * as new files, so the file key tells them apart even within the resolution
+     * of the modification time.
+     */
+    boolean matches(BasicFileAttributes file) {
+        return Objects.equals(fileKey, file.fileKey()) && fileSize == file.size()
+                && fileModified == file.lastModifiedTime().toMillis();
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.nanoTime();
+    }
+}
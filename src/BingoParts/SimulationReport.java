@@ -0,0 +1,136 @@
+package BingoParts;
+
+/**
+ * Summarizes a finished simulation: how many calls the simulated games took
+ * until the first Bingo, and how many BingoCards had a Bingo at that call.
+ *
+ * @author Lucas Schlierf
+ */
+public class SimulationReport {
+    private final long[] draws;
+    private final long[] winners;
+    private final long games;
+    private final long nanos;
+
+    /**
+     * Creates a new SimulationReport.
+     *
+     * @param draws   how many games ended after each number of calls, indexed by
+     *                the number of calls
+     * @param winners how many games ended with each number of winners, indexed by
+     *                the number of winners
+     * @param nanos   the time the simulation took, in nanoseconds
+     */
+    public SimulationReport(long[] draws, long[] winners, long nanos) {
+        this.draws = draws.clone();
+        this.winners = winners.clone();
+        long total = 0;
+        for (long n : draws) {
+            total += n;
+        }
+        this.games = total;
+        this.nanos = nanos;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Returns how many games had their first Bingo after the specified number of
+     * calls.
+     *
+     * @param calls the number of calls
+     * @return the number of games
+     */
+    public long getGamesEndingAfter(int calls) {
+        return calls < draws.length ? draws[calls] : 0;
+    }
+
+    /**
+     * Returns how many games ended with the specified number of BingoCards having
+     * a Bingo at the same time.
+     *
+     * @param count the number of winners
+     * @return the number of games
+     */
+    public long getGamesWithWinners(int count) {
+        return count < winners.length ? winners[count] : 0;
+    }
+
+    /**
+     * Returns the average number of calls until the first Bingo.
+     *
+     * @return the average number of calls
+     */
+    public double getMeanCalls() {
+        return mean(draws);
+    }
+
+    /**
+     * Returns the number of calls after which at least the specified share of
+     * games had their first Bingo.
+     *
+     * @param share the share of games, between 0 and 1
+     * @return the number of calls
+     */
+    public int getCallsPercentile(double share) {
+        long needed = (long) Math.ceil(share * games);
+        long seen = 0;
+        for (int i = 0; i < draws.length; i++) {
+            seen += draws[i];
+            if (seen >= needed && seen > 0)
+                return i;
+        }
+        return draws.length - 1;
+    }
+
+    /**
+     * Returns the average number of BingoCards having a Bingo at the first call
+     * with a Bingo.
+     *
+     * @return the average number of winners
+     */
+    public double getMeanWinners() {
+        return mean(winners);
+    }
+
+    /**
+     * Returns the share of games in which more than one BingoCard had the first
+     * Bingo.
+     *
+     * @return the share of games with simultaneous winners
+     */
+    public double getSharedWinShare() {
+        if (games == 0)
+            return 0;
+        long shared = 0;
+        for (int i = 2; i < winners.length; i++) {
+            shared += winners[i];
+        }
+        return (double) shared / games;
+    }
+
+    private double mean(long[] histogram) {
+        if (games == 0)
+            return 0;
+        double sum = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            sum += (double) i * histogram[i];
+        }
+        return sum / games;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "Simulated %d games in %.2f s: first Bingo after %.1f calls on average "
+                        + "(median %d, 10%% by %d, 90%% by %d), %.2f winners on average, %.1f%% shared wins",
+                games, nanos / 1e9, getMeanCalls(), getCallsPercentile(0.5), getCallsPercentile(0.1),
+                getCallsPercentile(0.9), getMeanWinners(), 100 * getSharedWinShare());
+    }
+}
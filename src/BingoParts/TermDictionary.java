@@ -0,0 +1,79 @@
+package BingoParts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns a small integer id to every distinct text used on BingoCards, so
+ * BingoCards only need to store those ids instead of separate BingoTile objects
+ * and String references. All BingoCards created from the same BingoSet share
+ * one TermDictionary, until the BingoSet is changed.
+ * 
+ * @author Lucas Schlierf
+ */
+public final class TermDictionary implements SetEntries {
+    private volatile String[] terms;
+    private int size;
+    private final Map<String, Integer> ids;
+
+    /**
+     * Creates a new, empty TermDictionary.
+     */
+    public TermDictionary() {
+        this.terms = new String[16];
+        this.ids = new HashMap<>();
+    }
+
+    /**
+     * Returns the id of the specified text, adding it to this TermDictionary if it
+     * isn't contained yet.
+     * 
+     * @param text the text
+     * @return the id of the text
+     */
+    public synchronized int intern(String text) {
+        Integer id = ids.get(text);
+        if (id != null)
+            return id;
+        String[] current = terms;
+        if (size == current.length)
+            current = Arrays.copyOf(current, size * 2);
+        current[size] = text;
+        terms = current;
+        ids.put(text, size);
+        return size++;
+    }
+
+    /**
+     * Returns the id of the specified text without adding it.
+     * 
+     * @param text the text
+     * @return the id of the text, or {@code -1} if it isn't contained
+     */
+    public synchronized int find(String text) {
+        Integer id = ids.get(text);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the text with the specified id.
+     * 
+     * @param id the id, as returned by {@code intern()}
+     * @return the text
+     */
+    @Override
+    public String get(int id) {
+        return terms[id];
+    }
+
+    /**
+     * Returns how many texts this TermDictionary holds.
+     * 
+     * @return the number of texts
+     */
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+}
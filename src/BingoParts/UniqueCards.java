@@ -0,0 +1,115 @@
+package BingoParts;
+
+/**
+ * Remembers the fingerprints of BingoCards to guarantee that no two of them are
+ * the same. Depending on the configuration, BingoCards count as the same if
+ * they have the same exact layout, or if they have the same texts in any
+ * arrangement.
+ * <p>
+ * The fingerprints are stored unboxed in a LongHashSet, which takes 11 to
+ * 22 bytes per BingoCard, so checking stays a single probe into one array
+ * even for tens of millions of BingoCards. Optionally a BloomFilter is checked
+ * first, which answers most lookups of unseen BingoCards without touching the
+ * much bigger set. Two different BingoCards sharing a fingerprint are possible,
+ * but very unlikely, and only cause a BingoCard to be rejected, never a
+ * duplicate to be accepted.
+ * <p>
+ * All methods are synchronized, so one UniqueCards can be shared by several
+ * threads generating BingoCards from the same CardGenerator.
+ *
+ * @author Lucas Schlierf
+ */
+public final class UniqueCards {
+    private final boolean sameTerms;
+    private final LongHashSet fingerprints;
+    private final BloomFilter filter;
+    private TermDictionary dictionary;
+
+    /**
+     * Creates a new UniqueCards, which hasn't seen any BingoCards yet.
+     *
+     * @param sameTerms wether BingoCards with the same texts in a different
+     *                  arrangement count as the same
+     */
+    public UniqueCards(boolean sameTerms) {
+        this(sameTerms, 0, false);
+    }
+
+    /**
+     * Creates a new UniqueCards, which hasn't seen any BingoCards yet.
+     *
+     * @param sameTerms      wether BingoCards with the same texts in a different
+     *                       arrangement count as the same
+     * @param expected       the expected number of BingoCards, to size the
+     *                       storage up front
+     * @param useBloomFilter wether to check a BloomFilter before the exact set
+     */
+    public UniqueCards(boolean sameTerms, long expected, boolean useBloomFilter) {
+        this.sameTerms = sameTerms;
+        this.fingerprints = new LongHashSet(expected);
+        this.filter = useBloomFilter ? new BloomFilter(Math.max(expected, 1 << 16)) : null;
+    }
+
+    /**
+     * Adds the BingoCard, unless the same BingoCard has been added before.
+     *
+     * @param card the BingoCard
+     * @return {@code true} if the BingoCard is new, {@code false} if it is a
+     *         duplicate
+     * @throws IllegalArgumentException if the BingoCard doesn't use the same
+     *                                  TermDictionary as the previous ones
+     */
+    public synchronized boolean add(BingoCard card) {
+        long fingerprint = fingerprint(card);
+        if (filter != null && filter.add(fingerprint)) {
+            fingerprints.add(fingerprint);
+            return true;
+        }
+        if (fingerprints.add(fingerprint))
+            return true;
+        Metrics.DUPLICATE_CARDS.increment();
+        return false;
+    }
+
+    /**
+     * Checks wether the same BingoCard has been added before.
+     *
+     * @param card the BingoCard
+     * @return {@code true} if the BingoCard has been added before
+     * @throws IllegalArgumentException if the BingoCard doesn't use the same
+     *                                  TermDictionary as the previous ones
+     */
+    public synchronized boolean contains(BingoCard card) {
+        long fingerprint = fingerprint(card);
+        if (filter != null && !filter.mightContain(fingerprint))
+            return false;
+        return fingerprints.contains(fingerprint);
+    }
+
+    /**
+     * Returns the number of distinct BingoCards added so far.
+     *
+     * @return the number of BingoCards
+     */
+    public synchronized int size() {
+        return fingerprints.size();
+    }
+
+    /**
+     * Returns wether BingoCards with the same texts in a different arrangement
+     * count as the same.
+     *
+     * @return {@code true} if only the texts are compared
+     */
+    public boolean isSameTerms() {
+        return sameTerms;
+    }
+
+    private long fingerprint(BingoCard card) {
+        if (dictionary == null)
+            dictionary = card.getDictionary();
+        else if (dictionary != card.getDictionary())
+            throw new IllegalArgumentException("BingoCards from different BingoSets can't be compared");
+        return CardFingerprint.of(card, sameTerms);
+    }
+}
@@ -0,0 +1,285 @@
+package BingoParts;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes BingoCards as SVG images or HTML tables for browsers, without creating
+ * a document model. Everything but the texts is precomputed per size as UTF-8
+ * bytes, and the escaped texts of the cells are cached per wrapped text, so
+ * writing a BingoCard mostly consists of copying cached bytes into a per-thread
+ * buffer, which is then written to the OutputStream at once.
+ * <p>
+ * The texts are wrapped like in the console and the PDFs. The same BingoCard,
+ * with the same BingoTiles marked off, always results in the same bytes, so
+ * responses can be cached.
+ *
+ * @author Lucas Schlierf
+ */
+public final class WebRenderer {
+
+    /**
+     * The width and height of a cell in SVG user units.
+     */
+    private static final int CELL = 100;
+
+    /**
+     * The part of a cell the text may fill, in SVG user units.
+     */
+    private static final int TEXT_AREA = 90;
+
+    /**
+     * The distance between two lines of text, in ems.
+     */
+    private static final float LEADING = 1.2f;
+
+    private static final byte[] SVG_CELL_END = bytes("</text></g>\n");
+    private static final byte[] SVG_END = bytes("</g>\n</svg>\n");
+    private static final byte[] HTML_ROW_START = bytes("<tr>");
+    private static final byte[] HTML_ROW_END = bytes("</tr>\n");
+    private static final byte[] HTML_CELL = bytes("<td>");
+    private static final byte[] HTML_MARKED_CELL = bytes("<td class=\"marked\">");
+    private static final byte[] HTML_CELL_END = bytes("</td>");
+    private static final byte[] HTML_END = bytes("</table>\n");
+
+    private static final Map<Integer, Template> TEMPLATES = new ConcurrentHashMap<>();
+    private static final Map<Long, byte[]> SVG_HEADERS = new ConcurrentHashMap<>();
+    private static final Map<CardLayout.WrapKey, byte[]> SVG_TEXTS = new ConcurrentHashMap<>();
+    private static final Map<CardLayout.WrapKey, byte[]> HTML_TEXTS = new ConcurrentHashMap<>();
+
+    private static final int MAX_BUFFER = 1 << 20;
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    /**
+     * This class only has static Methods, so it shouldn't be instanciated.
+     */
+    private WebRenderer() {
+    }
+
+    /**
+     * The precomputed parts of all BingoCards of one size.
+     */
+    private static final class Template {
+        private final byte[][] svgCells;
+        private final byte[][] svgMarkedCells;
+        private final byte[] htmlStart;
+
+        Template(int size) {
+            svgCells = new byte[size * size][];
+            svgMarkedCells = new byte[size * size][];
+            for (int i = 0; i < size * size; i++) {
+                String translate = "<g transform=\"translate(" + ((i % size) * CELL + CELL / 2 + 1) + ","
+                        + ((i / size) * CELL + CELL / 2 + 1) + ")\">";
+                String rect = "<rect x=\"" + (-CELL / 2) + "\" y=\"" + (-CELL / 2) + "\" width=\"" + CELL
+                        + "\" height=\"" + CELL + "\"";
+                svgCells[i] = bytes(translate + rect + "/><text>");
+                svgMarkedCells[i] = bytes(translate + rect + " class=\"marked\"/><text>");
+            }
+            htmlStart = bytes("<table class=\"bingo-card\" data-size=\"" + size + "\">\n");
+        }
+    }
+
+    /**
+     * A growable byte array, reused by the rendering thread.
+     */
+    private static final class Buffer {
+        private byte[] bytes = new byte[8192];
+        private int length;
+
+        void put(byte[] b) {
+            if (length + b.length > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(length + b.length, bytes.length * 2));
+            System.arraycopy(b, 0, bytes, length, b.length);
+            length += b.length;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, length);
+        }
+
+        /**
+         * Empties the buffer, also after a failed render, so nothing of one
+         * BingoCard ends up in the next one rendered on the same thread.
+         */
+        void reset() {
+            length = 0;
+            if (bytes.length > MAX_BUFFER)
+                bytes = new byte[8192];
+        }
+    }
+
+    /**
+     * Writes the BingoCard as a standalone SVG image. Marked off BingoTiles get
+     * the class {@code marked}, so their look can be changed with CSS.
+     *
+     * @param card the BingoCard
+     * @param out  where to write the SVG to, in UTF-8
+     * @throws IOException if writing fails
+     */
+    public static void writeSvg(BingoCard card, OutputStream out) throws IOException {
+        Buffer buffer = BUFFERS.get();
+        buffer.reset();
+        try {
+            CardLayout layout = CardLayout.of(card, false);
+            int size = layout.getSize();
+            Template template = template(size);
+            buffer.put(svgHeader(layout));
+            for (int i = 0; i < size * size; i++) {
+                buffer.put(card.isMarked(i) && card.getTerm(i) != BingoCard.FREE ? template.svgMarkedCells[i]
+                        : template.svgCells[i]);
+                buffer.put(svgText(card, layout, i));
+                buffer.put(SVG_CELL_END);
+            }
+            buffer.put(SVG_END);
+            buffer.writeTo(out);
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Writes the BingoCard as an HTML table, to be embedded into a page. The table
+     * has the class {@code bingo-card}, and marked off BingoTiles have the class
+     * {@code marked}.
+     *
+     * @param card the BingoCard
+     * @param out  where to write the HTML to, in UTF-8
+     * @throws IOException if writing fails
+     */
+    public static void writeHtml(BingoCard card, OutputStream out) throws IOException {
+        Buffer buffer = BUFFERS.get();
+        buffer.reset();
+        try {
+            CardLayout layout = CardLayout.of(card, false);
+            int size = layout.getSize();
+            buffer.put(template(size).htmlStart);
+            for (int i = 0; i < size * size; i++) {
+                if (i % size == 0)
+                    buffer.put(HTML_ROW_START);
+                buffer.put(card.isMarked(i) && card.getTerm(i) != BingoCard.FREE ? HTML_MARKED_CELL : HTML_CELL);
+                buffer.put(htmlText(card, layout, i));
+                buffer.put(HTML_CELL_END);
+                if (i % size == size - 1)
+                    buffer.put(HTML_ROW_END);
+            }
+            buffer.put(HTML_END);
+            buffer.writeTo(out);
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    private static Template template(int size) {
+        return TEMPLATES.computeIfAbsent(size, Template::new);
+    }
+
+    /**
+     * Returns the start of the SVG up to the group of cells, with a font size
+     * that fits the longest word and the most lines of the layout into a cell.
+     */
+    private static byte[] svgHeader(CardLayout layout) {
+        int size = layout.getSize();
+        long key = (long) size << 42 | (long) layout.getColumnWidth() << 21 | layout.getLineCount();
+        byte[] header = SVG_HEADERS.get(key);
+        if (header != null)
+            return header;
+        // monospace fonts are about 0.6 ems wide
+        float fontSize = Math.min(TEXT_AREA / (Math.max(1, layout.getColumnWidth()) * 0.6f),
+                TEXT_AREA / (layout.getLineCount() * LEADING));
+        int side = size * CELL + 2;
+        header = bytes("<svg xmlns=\"http://www.w3.org/2000/svg\" class=\"bingo-card\" viewBox=\"0 0 " + side + " "
+                + side + "\" width=\"" + side + "\" height=\"" + side + "\">\n"
+                + "<style>rect{fill:#fff;stroke:#000;stroke-width:2}rect.marked{fill:#cde}</style>\n"
+                + "<g font-family=\"monospace\" font-size=\"" + String.format(Locale.ROOT, "%.2f", fontSize)
+                + "\" text-anchor=\"middle\">\n");
+        if (SVG_HEADERS.size() >= CardLayout.MAX_CACHED)
+            SVG_HEADERS.clear();
+        SVG_HEADERS.put(key, header);
+        return header;
+    }
+
+    /**
+     * Returns the lines of a cell as tspans, centered around the origin of the
+     * cell.
+     */
+    private static byte[] svgText(BingoCard card, CardLayout layout, int cell) {
+        CardLayout.WrapKey key = new CardLayout.WrapKey(card.getText(cell), (char) 0, layout.getColumnWidth());
+        byte[] text = SVG_TEXTS.get(key);
+        if (text != null)
+            return text;
+        String[] lines = layout.getCell(cell);
+        StringBuilder tspans = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            // the first baseline is moved up by half the height of all lines, and
+            // down by about half the height of a letter
+            float dy = i == 0 ? 0.35f - (lines.length - 1) * LEADING / 2 : LEADING;
+            tspans.append("<tspan x=\"0\" dy=\"").append(String.format(Locale.ROOT, "%.2f", dy)).append("em\">");
+            escape(lines[i], tspans);
+            tspans.append("</tspan>");
+        }
+        text = bytes(tspans.toString());
+        if (SVG_TEXTS.size() >= CardLayout.MAX_CACHED)
+            SVG_TEXTS.clear();
+        SVG_TEXTS.put(key, text);
+        return text;
+    }
+
+    /**
+     * Returns the lines of a cell separated by line breaks.
+     */
+    private static byte[] htmlText(BingoCard card, CardLayout layout, int cell) {
+        CardLayout.WrapKey key = new CardLayout.WrapKey(card.getText(cell), (char) 0, layout.getColumnWidth());
+        byte[] text = HTML_TEXTS.get(key);
+        if (text != null)
+            return text;
+        String[] lines = layout.getCell(cell);
+        StringBuilder html = new StringBuilder();
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0)
+                html.append("<br>");
+            escape(lines[i], html);
+        }
+        text = bytes(html.toString());
+        if (HTML_TEXTS.size() >= CardLayout.MAX_CACHED)
+            HTML_TEXTS.clear();
+        HTML_TEXTS.put(key, text);
+        return text;
+    }
+
+    /**
+     * Escapes the characters that have a meaning in XML and HTML.
+     */
+    private static void escape(String s, StringBuilder out) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '&':
+                    out.append("&amp;");
+                    break;
+                case '<':
+                    out.append("&lt;");
+                    break;
+                case '>':
+                    out.append("&gt;");
+                    break;
+                case '"':
+                    out.append("&quot;");
+                    break;
+                case '\'':
+                    out.append("&#39;");
+                    break;
+                default:
+                    out.append(c);
+            }
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
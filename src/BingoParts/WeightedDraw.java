@@ -0,0 +1,215 @@
+package BingoParts;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws the entries of BingoCards from a WeightedSet, honoring the weights and
+ * categories of the entries. Every category has its own AliasTable, so every
+ * draw takes constant time. Which BingoTile draws from which category is fixed
+ * before the entries are drawn: by column if there are as many categories as
+ * columns, otherwise by dealing an equal share of the BingoTiles to every
+ * category and shuffling them. So the categories always come out right and no
+ * BingoCard is ever drawn again.
+ * <p>
+ * An entry drawn twice for the same BingoCard is drawn again, which gives every
+ * remaining entry of the category a chance proportional to its weight. Only if
+ * that keeps failing, because a few entries hold almost all the weight, the
+ * entry is picked from the remaining ones directly.
+ *
+ * @author Lucas Schlierf
+ */
+final class WeightedDraw {
+
+    private static final int MAX_ATTEMPTS = 32;
+
+    private final WeightedSet set;
+    private final int size;
+    private final boolean byColumn;
+    private final int[][] members;
+    private final AliasTable[] tables;
+    private final int[] slots;
+
+    /**
+     * Per-thread scratch space for drawing.
+     */
+    static final class Scratch {
+        private final int[] used;
+        private final int[] slots;
+        private int stamp;
+
+        private Scratch(int entries, int[] slots) {
+            this.used = new int[entries];
+            this.slots = slots.clone();
+        }
+    }
+
+    private WeightedDraw(WeightedSet set, int size, boolean byColumn, int[][] members, int[] slots) {
+        this.set = set;
+        this.size = size;
+        this.byColumn = byColumn;
+        this.members = members;
+        this.slots = slots;
+        this.tables = new AliasTable[members.length];
+        for (int c = 0; c < members.length; c++) {
+            double[] weights = new double[members[c].length];
+            for (int m = 0; m < weights.length; m++) {
+                weights[m] = set.getWeight(members[c][m]);
+            }
+            tables[c] = new AliasTable(weights);
+        }
+    }
+
+    /**
+     * Prepares drawing BingoCards from the specified WeightedSet.
+     *
+     * @param set         the WeightedSet
+     * @param size        the size of the BingoCards
+     * @param addFreeTile wether the BingoCards have a free BingoTile in the
+     *                    middle
+     * @return {@code null} if a category doesn't have enough entries for its
+     *         BingoTiles, or the WeightedDraw otherwise
+     */
+    static WeightedDraw of(WeightedSet set, int size, boolean addFreeTile) {
+        int categories = set.getCategories().size();
+        int[] counts = new int[categories];
+        for (int i = 0; i < set.size(); i++) {
+            counts[set.getCategoryIndex(i)]++;
+        }
+        int[][] members = new int[categories][];
+        for (int c = 0; c < categories; c++) {
+            members[c] = new int[counts[c]];
+        }
+        int[] filled = new int[categories];
+        for (int i = 0; i < set.size(); i++) {
+            int c = set.getCategoryIndex(i);
+            members[c][filled[c]++] = i;
+        }
+        int tiles = size * size - (addFreeTile ? 1 : 0);
+        boolean byColumn = categories == size && categories > 1;
+        int[] slots = new int[tiles];
+        int[] needed = new int[categories];
+        if (byColumn) {
+            Arrays.fill(needed, size);
+            if (addFreeTile)
+                needed[size / 2]--;
+        } else {
+            for (int c = 0; c < categories; c++) {
+                needed[c] = tiles / categories + (c < tiles % categories ? 1 : 0);
+            }
+            for (int c = 0, slot = 0; c < categories; c++) {
+                for (int n = 0; n < needed[c]; n++) {
+                    slots[slot++] = c;
+                }
+            }
+        }
+        for (int c = 0; c < categories; c++) {
+            if (members[c].length < needed[c])
+                return null;
+        }
+        return new WeightedDraw(set, size, byColumn, members, slots);
+    }
+
+    Scratch newScratch() {
+        return new Scratch(set.size(), slots);
+    }
+
+    /**
+     * Draws the entries of one BingoCard.
+     *
+     * @param terms   receives the term ids, row by row
+     * @param center  the position of the free BingoTile, or -1
+     * @param pool    the term ids of the entries
+     * @param random  the source of randomness
+     * @param scratch the scratch space of the calling thread
+     */
+    void draw(int[] terms, int center, int[] pool, SplittableRandom random, Scratch scratch) {
+        if (++scratch.stamp == 0) {
+            Arrays.fill(scratch.used, 0);
+            scratch.stamp = 1;
+        }
+        if (!byColumn) {
+            // start from the same order every time, so seeded draws only depend on
+            // the random generator
+            int[] shuffled = scratch.slots;
+            System.arraycopy(slots, 0, shuffled, 0, slots.length);
+            for (int i = shuffled.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int slot = shuffled[i];
+                shuffled[i] = shuffled[j];
+                shuffled[j] = slot;
+            }
+        }
+        for (int i = 0, slot = 0; i < terms.length; i++) {
+            if (i == center) {
+                terms[i] = BingoCard.FREE;
+                continue;
+            }
+            int category = byColumn ? i % size : scratch.slots[slot++];
+            terms[i] = pool[drawFrom(category, random, scratch)];
+        }
+    }
+
+    private int drawFrom(int category, SplittableRandom random, Scratch scratch) {
+        int[] candidates = members[category];
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int entry = candidates[tables[category].sample(random)];
+            if (scratch.used[entry] != scratch.stamp) {
+                scratch.used[entry] = scratch.stamp;
+                return entry;
+            }
+        }
+        double remaining = 0;
+        for (int entry : candidates) {
+            if (scratch.used[entry] != scratch.stamp)
+                remaining += set.getWeight(entry);
+        }
+        double target = random.nextDouble() * remaining;
+        int last = -1;
+        for (int entry : candidates) {
+            if (scratch.used[entry] == scratch.stamp)
+                continue;
+            last = entry;
+            target -= set.getWeight(entry);
+            if (target < 0)
+                break;
+        }
+        scratch.used[last] = scratch.stamp;
+        return last;
+    }
+
+    /**
+     * Returns how many distinct BingoCards can be drawn, capped at about
+     * {@code 1e18}. For categories dealt to random positions, the different
+     * arrangements of the categories aren't counted, so this is a lower bound.
+     *
+     * @param sameTerms wether BingoCards with the same texts in a different
+     *                  arrangement count as the same
+     * @return the number of distinct BingoCards
+     */
+    double distinctCards(boolean sameTerms) {
+        int[] needed = new int[members.length];
+        if (byColumn) {
+            Arrays.fill(needed, size);
+            if (slots.length < size * size)
+                needed[size / 2]--;
+        } else {
+            for (int slot : slots) {
+                needed[slot]++;
+            }
+        }
+        double distinct = 1;
+        for (int c = 0; c < members.length && distinct < 1e18; c++) {
+            int n = members[c].length;
+            int k = sameTerms ? Math.min(needed[c], n - needed[c]) : needed[c];
+            for (int i = 0; i < k && distinct < 1e18; i++) {
+                distinct = sameTerms ? distinct * (n - i) / (i + 1) : distinct * (n - i);
+            }
+        }
+        return Math.min(distinct, 1e18);
+    }
+
+    WeightedSet getSet() {
+        return set;
+    }
+}
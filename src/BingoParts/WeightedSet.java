@@ -0,0 +1,211 @@
+package BingoParts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The entries of a BingoSet together with their weights and categories.
+ * <p>
+ * A BingoSet file is a plain list of entries, one per line, all equally likely.
+ * If its first line is {@code #weighted}, every following line is an entry,
+ * optionally followed by a tab and its weight, and optionally by another tab and
+ * its category:
+ *
+ * <pre>
+ * #weighted
+ * synergy	3
+ * B1	1	B
+ * N42	1	N
+ * </pre>
+ *
+ * Entries without a weight have weight 1, entries without a category belong to
+ * the unnamed category, and empty lines are ignored. An entry with weight 2 is
+ * twice as likely to be drawn as one with weight 1. If there are as many
+ * categories as a BingoCard has columns, every column is drawn from one
+ * category, in the order the categories first appear, like the columns of
+ * classic B-I-N-G-O. Otherwise every category gets an equal share of the
+ * BingoTiles, at random positions.
+ *
+ * @author Lucas Schlierf
+ */
+public final class WeightedSet {
+
+    /**
+     * The first line of a weighted BingoSet file.
+     */
+    public static final String HEADER = "#weighted";
+
+    private final List<String> texts;
+    private final double[] weights;
+    private final int[] categories;
+    private final List<String> categoryNames;
+
+    /**
+     * Creates a new WeightedSet.
+     *
+     * @param texts         the entries
+     * @param weights       the weights of the entries, {@code null} if they all
+     *                      have the same weight
+     * @param categories    the index of the category of every entry in
+     *                      {@code categoryNames}, {@code null} if there is only
+     *                      one category
+     * @param categoryNames the names of the categories
+     */
+    private WeightedSet(List<String> texts, double[] weights, int[] categories, List<String> categoryNames) {
+        this.texts = texts;
+        this.weights = weights;
+        this.categories = categories;
+        this.categoryNames = categoryNames;
+    }
+
+    /**
+     * Creates a new WeightedSet.
+     *
+     * @param texts      the entries
+     * @param weights    the weights of the entries, positive
+     * @param categories the categories of the entries, {@code null} or empty for
+     *                   the unnamed category
+     * @return the WeightedSet
+     * @throws IllegalArgumentException if the arrays don't have the same length,
+     *                                  or a weight isn't positive
+     */
+    public static WeightedSet of(String[] texts, double[] weights, String[] categories) {
+        if (texts.length != weights.length || texts.length != categories.length)
+            throw new IllegalArgumentException("Every entry needs a weight and a category");
+        Map<String, Integer> names = new LinkedHashMap<>();
+        int[] indexes = new int[texts.length];
+        for (int i = 0; i < texts.length; i++) {
+            if (!(weights[i] > 0) || Double.isInfinite(weights[i]))
+                throw new IllegalArgumentException("The weight of '" + texts[i] + "' has to be positive");
+            String category = categories[i] == null ? "" : categories[i];
+            indexes[i] = names.computeIfAbsent(category, c -> names.size());
+        }
+        return new WeightedSet(Collections.unmodifiableList(new ArrayList<>(List.of(texts))), weights.clone(),
+                indexes, Collections.unmodifiableList(new ArrayList<>(names.keySet())));
+    }
+
+    /**
+     * Reads the lines of a BingoSet file.
+     *
+     * @param lines the lines
+     * @return the WeightedSet, with the same weight and category for every entry
+     *         if the file isn't weighted
+     * @throws IllegalArgumentException if a weight isn't a positive number
+     */
+    static WeightedSet parse(List<String> lines) {
+        if (!isWeighted(lines))
+            return new WeightedSet(Collections.unmodifiableList(lines), null, null, List.of(""));
+        List<String> texts = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        List<String> categories = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank())
+                continue;
+            String[] columns = line.split("\t", 3);
+            texts.add(columns[0]);
+            double weight = 1;
+            if (columns.length > 1 && !columns[1].isBlank()) {
+                try {
+                    weight = Double.parseDouble(columns[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("'" + columns[1] + "' is not a weight", e);
+                }
+            }
+            weights.add(weight);
+            categories.add(columns.length > 2 ? columns[2].trim() : "");
+        }
+        return of(texts.toArray(String[]::new), weights.stream().mapToDouble(Double::doubleValue).toArray(),
+                categories.toArray(String[]::new));
+    }
+
+    /**
+     * Checks wether the lines of a BingoSet file are in the weighted format.
+     *
+     * @param lines the lines
+     * @return {@code true} if the first line is {@code HEADER}
+     */
+    static boolean isWeighted(List<String> lines) {
+        return !lines.isEmpty() && lines.get(0).equals(HEADER);
+    }
+
+    /**
+     * Formats this WeightedSet as the lines of a BingoSet file.
+     *
+     * @return the lines
+     */
+    public List<String> toLines() {
+        if (isUniform())
+            return texts;
+        List<String> lines = new ArrayList<>(texts.size() + 1);
+        lines.add(HEADER);
+        for (int i = 0; i < texts.size(); i++) {
+            lines.add(toLine(i));
+        }
+        return lines;
+    }
+
+    /**
+     * Formats one entry as a line of a weighted BingoSet file.
+     *
+     * @param index the index of the entry
+     * @return the line
+     */
+    String toLine(int index) {
+        String category = getCategory(index);
+        return texts.get(index) + "\t" + getWeight(index) + (category.isEmpty() ? "" : "\t" + category);
+    }
+
+    /**
+     * Returns wether all entries have the same weight and category, like in a
+     * plain BingoSet file.
+     *
+     * @return {@code true} if the entries are drawn uniformly
+     */
+    public boolean isUniform() {
+        return weights == null && categories == null;
+    }
+
+    /**
+     * Returns the entries.
+     *
+     * @return an unmodifiable List of the entries
+     */
+    public List<String> getTexts() {
+        return texts;
+    }
+
+    public int size() {
+        return texts.size();
+    }
+
+    public double getWeight(int index) {
+        return weights == null ? 1 : weights[index];
+    }
+
+    public String getCategory(int index) {
+        return categoryNames.get(getCategoryIndex(index));
+    }
+
+    /**
+     * Returns the index of the category of the specified entry in
+     * {@code getCategories()}.
+     *
+     * @param index the index of the entry
+     * @return the index of the category
+     */
+    public int getCategoryIndex(int index) {
+        return categories == null ? 0 : categories[index];
+    }
+
+    /**
+     * Returns the names of all categories, in the order they first appear.
+     *
+     * @return an unmodifiable List of the category names
+     */
+    public List<String> getCategories() {
+        return categoryNames;
+    }
+}
@@ -1,6 +1,8 @@
 package ConsoleGame;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 import BingoParts.*;
@@ -31,8 +33,24 @@ public class ConsoleGame {
                 }
                 chosen = scan.nextInt();
             }
-            playingCard = BingoCard.createFromSet(BingoSets.getAllNames().get(chosen), 3, false);
-            System.out.println("\nYou chose: " + BingoSets.getAllNames().get(chosen));
+            String setName = BingoSets.getAllNames().get(chosen);
+            System.out.println("\nYou chose: " + setName);
+            scan.nextLine();
+            System.out.println("Do you want to mark off fields yourself or call terms for several cards? (mark/call)");
+            String mode = scan.nextLine();
+            while (!mode.matches("(?i)mark|call")) {
+                System.out.println("Please enter either 'mark' or 'call'.");
+                mode = scan.nextLine();
+            }
+            if (mode.matches("(?i)call")) {
+                playCaller(setName, scan);
+                return;
+            }
+            GameJournal journal = openGame(setName, "mark", scan);
+            GameEngine game = journal.getEngine();
+            if (game.getCardCount() == 0)
+                game.addCard(BingoCard.createFromSet(setName, 3, false));
+            playingCard = game.getCard(0);
             while (!playingCard.isCompleted()) {
                 System.out.println(playingCard.toConsoleOutput());
                 System.out.println("Select the Field you want to mark off:");
@@ -44,13 +62,105 @@ public class ConsoleGame {
                     System.out.println("Please select a value between 1 and " + playingCard.getSize());
                     continue;
                 }
-                playingCard.markOffTile(x - 1, y - 1);
+                game.markOff(0, x - 1, y - 1);
             }
             System.out.println(playingCard.toConsoleOutput());
             System.out.println("Bingo!");
+            finishGame(journal, setName, "mark");
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Plays a game as the caller: creates the chosen number of BingoCards, then
+     * marks off every term the caller enters on all of them, until at least one
+     * BingoCard has a Bingo.
+     * 
+     * @param setName the BingoSet to create the BingoCards from
+     * @param scan    the Scanner to read the input from
+     * @throws IOException if an IO exception occurs while reading the BingoSet
+     */
+    private static void playCaller(String setName, Scanner scan) throws IOException {
+        CardGenerator generator = CardGenerator.forSet(setName, 3, false);
+        if (generator == null) {
+            System.out.println("That set is too small to create BingoCards.");
+            return;
+        }
+        GameJournal journal = openGame(setName, "call", scan);
+        GameEngine game = journal.getEngine();
+        if (game.getCardCount() == 0) {
+            System.out.println("How many cards are playing?");
+            int count = scan.nextInt();
+            scan.nextLine();
+            journal.setSynchronous(false);
+            generator.generateUnique(Math.max(count, 1), new UniqueCards(false)).forEach(game::addCard);
+            journal.setSynchronous(true);
+        }
+        int[] winners = game.getWinners();
+        while (winners.length == 0) {
+            System.out.println("Enter the called term:");
+            String term = scan.nextLine().trim();
+            if (game.isCalled(term)) {
+                System.out.println("'" + term + "' has already been called.");
+                continue;
+            }
+            winners = game.call(term);
+            if (!game.isOnAnyCard(term))
+                System.out.println("'" + term + "' isn't on any card.");
+        }
+        for (int winner : winners) {
+            System.out.println("Card " + (winner + 1) + ":");
+            System.out.println(game.getCard(winner).toConsoleOutput());
+        }
+        System.out.println("Bingo after " + game.getCalls().size() + " calls!");
+        finishGame(journal, setName, "call");
+    }
+
+    /**
+     * Opens the journaled game of the specified BingoSet and mode, so a game that
+     * was interrupted, e.g. by a crash, can be resumed. If there is an unfinished
+     * game, the player is asked wether to resume it or to start over.
+     * 
+     * @param setName the BingoSet of the game
+     * @param mode    the mode of the game
+     * @param scan    the Scanner to read the input from
+     * @return the GameJournal of the game
+     * @throws IOException if an IO exception occurs while reading or writing the
+     *                     journal
+     */
+    private static GameJournal openGame(String setName, String mode, Scanner scan) throws IOException {
+        Path directory = gameDirectory(setName, mode);
+        GameJournal journal = GameJournal.open(directory, setName);
+        if (journal.getEngine().getCardCount() == 0)
+            return journal;
+        String choice = "";
+        while (!choice.matches("(?i)y|n")) {
+            System.out.println("There is an unfinished game. Do you want to resume it? (Y/N)");
+            choice = scan.nextLine();
+        }
+        if (choice.matches("(?i)y"))
+            return journal;
+        journal.close();
+        GameJournal.delete(directory);
+        return GameJournal.open(directory, setName);
+    }
+
+    /**
+     * Closes the journal of a finished game and deletes it.
+     * 
+     * @param journal the GameJournal of the game
+     * @param setName the BingoSet of the game
+     * @param mode    the mode of the game
+     * @throws IOException if an IO exception occurs while deleting the journal
+     */
+    private static void finishGame(GameJournal journal, String setName, String mode) throws IOException {
+        journal.close();
+        GameJournal.delete(gameDirectory(setName, mode));
+    }
+
+    private static Path gameDirectory(String setName, String mode) {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "BingoGames", setName + "-" + mode);
+    }
+
 }
@@ -0,0 +1,285 @@
+package GameServer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import BingoParts.*;
+
+/**
+ * One game hosted by the GameServer: the BingoCards of all players, run by a
+ * GameEngine, and the log of all called terms.
+ * <p>
+ * The log is an immutable snapshot that is replaced on every call. Players
+ * waiting for the next call wait on the future of the snapshot they have seen,
+ * which is completed when it is replaced, so a call wakes all waiting players at
+ * once and every one of them reads the new terms from the snapshot without
+ * taking any lock.
+ * <p>
+ * A room remembers when it was last used, so the GameServer can close rooms
+ * nobody plays in anymore. Closing a room wakes all players waiting for a call.
+ *
+ * @author Lucas Schlierf
+ */
+public class GameRoom {
+    private final String id;
+    private final String callerToken;
+    private final CardGenerator generator;
+    private final Supplier<BingoCard> cards;
+    private final UniqueCards unique;
+    private final GameEngine engine;
+    private final List<String> drawOrder;
+    private final Set<String> entries;
+    private final Set<String> called;
+    private final Object callLock;
+    private final Object joinLock;
+    private volatile CallLog log;
+    private volatile long lastUsed;
+    private volatile boolean closed;
+    private int nextDraw;
+
+    /**
+     * The terms called up to one point in time. The array is shared between
+     * snapshots and only ever appended to, every snapshot reading only its first
+     * {@code count} terms.
+     */
+    static final class CallLog {
+        private final String[] terms;
+        private final int count;
+        private final CompletableFuture<CallLog> next;
+
+        CallLog(String[] terms, int count) {
+            this.terms = terms;
+            this.count = count;
+            this.next = new CompletableFuture<>();
+        }
+
+        CallLog append(String term) {
+            String[] array = count == terms.length ? Arrays.copyOf(terms, Math.max(16, count * 2)) : terms;
+            array[count] = term;
+            return new CallLog(array, count + 1);
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the terms called after the first {@code since} terms.
+         */
+        List<String> since(int since) {
+            return since >= count ? Collections.emptyList()
+                    : Collections.unmodifiableList(Arrays.asList(Arrays.copyOfRange(terms, Math.max(since, 0), count)));
+        }
+    }
+
+    /**
+     * Creates a new GameRoom.
+     *
+     * @param id          the id of the room
+     * @param callerToken the token the caller has to present
+     * @param generator   the CardGenerator for the BingoCards of the players
+     * @param entries     the entries of the BingoSet, drawn in random order when
+     *                    the caller doesn't name a term
+     */
+    GameRoom(String id, String callerToken, CardGenerator generator, List<String> entries) {
+        this.id = id;
+        this.callerToken = callerToken;
+        this.generator = generator;
+        this.cards = generator.supplier();
+        this.unique = new UniqueCards(false);
+        this.engine = new GameEngine();
+        this.drawOrder = new ArrayList<>(entries);
+        Collections.shuffle(drawOrder);
+        this.entries = new HashSet<>(entries);
+        this.called = new HashSet<>();
+        this.callLock = new Object();
+        this.joinLock = new Object();
+        this.log = new CallLog(new String[16], 0);
+        this.lastUsed = System.nanoTime();
+    }
+
+    String getId() {
+        return id;
+    }
+
+    boolean isCaller(String token) {
+        return callerToken.equals(token);
+    }
+
+    /**
+     * Adds a new player with a new, unique BingoCard. The BingoCards of a room
+     * are drawn one after another from one supplier, so a join only takes time
+     * proportional to the size of the BingoCard.
+     *
+     * @return the number of the player's BingoCard
+     * @throws IllegalArgumentException if the BingoSet doesn't allow another
+     *                                  distinct BingoCard
+     */
+    int join() {
+        touch();
+        BingoCard card;
+        synchronized (joinLock) {
+            if (unique.size() + 1.0 > generator.distinctCards(false))
+                throw new IllegalArgumentException("The BingoSet only allows "
+                        + (long) generator.distinctCards(false) + " distinct BingoCards");
+            do {
+                card = cards.get();
+            } while (!unique.add(card));
+        }
+        return engine.addCard(card);
+    }
+
+    /**
+     * Returns the BingoCard of the specified player, without marks, since the
+     * players mark off the called terms themselves.
+     *
+     * @param number the number of the player's BingoCard
+     * @return the formatted BingoCard
+     */
+    String getCard(int number) {
+        touch();
+        return engine.getCard(number).toConsolePrint();
+    }
+
+    /**
+     * Returns the BingoCard of a player, with the called terms marked off.
+     *
+     * @param number the number of the player's BingoCard
+     * @return the BingoCard
+     */
+    BingoCard getBingoCard(int number) {
+        touch();
+        return engine.getCard(number);
+    }
+
+    /**
+     * Calls a term. Only one call is processed at a time, but players reading the
+     * log are never blocked by it.
+     *
+     * @param term the term to call, or {@code null} to draw the next entry of the
+     *             BingoSet that hasn't been called yet
+     * @return the called term, or {@code null} if the term isn't part of the
+     *         BingoSet or all entries have been called
+     */
+    String call(String term) {
+        touch();
+        synchronized (callLock) {
+            if (term == null) {
+                while (nextDraw < drawOrder.size() && called.contains(drawOrder.get(nextDraw)))
+                    nextDraw++;
+                if (nextDraw == drawOrder.size())
+                    return null;
+                term = drawOrder.get(nextDraw++);
+            } else if (!entries.contains(term)) {
+                return null;
+            }
+            if (!called.add(term))
+                return term;
+            engine.call(term);
+            CallLog previous = log;
+            log = previous.append(term);
+            previous.next.complete(log);
+        }
+        return term;
+    }
+
+    /**
+     * Returns the terms called after the first {@code since} terms, waiting for
+     * the next call if there aren't any yet.
+     *
+     * @param since   the number of terms the player already knows
+     * @param timeout how long to wait for the next call, in milliseconds
+     * @return the new terms, empty if there were none before the timeout
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    List<String> awaitCalls(int since, long timeout) throws InterruptedException {
+        touch();
+        CallLog current = log;
+        if (current.getCount() > since || timeout <= 0 || closed)
+            return current.since(since);
+        try {
+            return current.next.get(timeout, TimeUnit.MILLISECONDS).since(since);
+        } catch (TimeoutException e) {
+            return Collections.emptyList();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Checks a player's claim to have a Bingo against the player's BingoCard, as
+     * marked off by the calls so far, not by the player.
+     *
+     * @param number the number of the player's BingoCard
+     * @return {@code true} if the claim is valid
+     */
+    boolean claim(int number) {
+        touch();
+        return engine.claim(number);
+    }
+
+    /**
+     * Closes the room and wakes all players waiting for the next call, who get
+     * no new terms.
+     */
+    void close() {
+        synchronized (callLock) {
+            closed = true;
+            log.next.complete(log);
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns how long the room hasn't been used.
+     *
+     * @return the idle time, in nanoseconds
+     */
+    long getIdleNanos() {
+        return System.nanoTime() - lastUsed;
+    }
+
+    private void touch() {
+        lastUsed = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of players in this room.
+     *
+     * @return the number of players
+     */
+    int getPlayers() {
+        return engine.getCardCount();
+    }
+
+    /**
+     * Creates a new GameRoom for the specified BingoSet.
+     *
+     * @param id          the id of the room
+     * @param callerToken the token the caller has to present
+     * @param setName     the name of the BingoSet
+     * @param size        the size of the BingoCards
+     * @param addFreeTile wether to add a free BingoTile (only works for odd sizes)
+     * @return {@code null} if the BingoSet doesn't contain enough entries, or the
+     *         new GameRoom otherwise
+     * @throws IOException if an IO exception occurs while fetching the BingoSet
+     */
+    static GameRoom create(String id, String callerToken, String setName, int size, boolean addFreeTile)
+            throws IOException {
+        CardGenerator generator = CardGenerator.forSet(setName, size, addFreeTile);
+        return generator == null ? null : new GameRoom(id, callerToken, generator, generator.getSnapshot().getEntries());
+    }
+}
@@ -0,0 +1,447 @@
+package GameServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import BingoParts.*;
+
+/**
+ * Hosts games of Bingo for remote players over HTTP, using only the HTTP server
+ * of the JDK. Every request is handled on a thread of its own, a virtual thread
+ * where the JDK supports them, so thousands of players can wait for the next
+ * call at the same time. All endpoints answer with plain text, except for the
+ * SVG and HTML versions of the BingoCards:
+ * <ul>
+ * <li>{@code POST /rooms?set=name&size=n[&free=false]} creates a room and
+ * answers with the room id and the token of the caller</li>
+ * <li>{@code POST /join?room=id} adds a player with a new BingoCard and answers
+ * with the token of the player</li>
+ * <li>{@code GET /card?player=token} answers with the player's BingoCard</li>
+ * <li>{@code GET /card.svg?player=token} and {@code GET /card.html?player=token}
+ * answer with the player's BingoCard as SVG image or HTML table, with the
+ * called terms marked</li>
+ * <li>{@code GET /calls?room=id&since=n[&timeout=ms]} answers with the terms
+ * called after the first n terms, one per line, waiting for the next call if
+ * there aren't any yet</li>
+ * <li>{@code POST /call?room=id&caller=token[&term=text]} calls the term, or
+ * the next random entry of the BingoSet if none is given</li>
+ * <li>{@code POST /claim?player=token} checks the player's claim to have a
+ * Bingo</li>
+ * <li>{@code POST /close?room=id&caller=token} closes the room, after which
+ * the room and its players aren't found anymore</li>
+ * </ul>
+ * Rooms that haven't been used for {@code ROOM_TIMEOUT} are closed as well, so
+ * finished games don't pile up in a long-running server.
+ *
+ * @author Lucas Schlierf
+ */
+public class GameServer {
+
+    /**
+     * How long a request for new calls waits at most, in milliseconds.
+     */
+    static final long MAX_POLL_TIMEOUT = 60_000;
+
+    /**
+     * How long a room may go without any request before it is closed, in
+     * milliseconds.
+     */
+    static final long ROOM_TIMEOUT = 2 * 60 * 60 * 1000;
+
+    /**
+     * How often the rooms are checked for being idle, in milliseconds.
+     */
+    static final long EXPIRY_INTERVAL = 60_000;
+
+    private static final SecureRandom TOKENS = new SecureRandom();
+    private static final String PLAIN_TEXT = "text/plain; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService expiry;
+    private final Map<String, GameRoom> rooms;
+    private final Map<String, Player> players;
+
+    /**
+     * A player's seat in a room.
+     */
+    private static final class Player {
+        private final GameRoom room;
+        private final int card;
+
+        Player(GameRoom room, int card) {
+            this.room = room;
+            this.card = card;
+        }
+    }
+
+    /**
+     * Thrown by the handlers to answer with an error status.
+     */
+    private static final class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Handles one endpoint, returning the body of the response.
+     */
+    private interface Endpoint {
+        String handle(Map<String, String> params) throws HttpError, IOException, InterruptedException;
+    }
+
+    /**
+     * Handles one endpoint, writing the body of the response.
+     */
+    private interface BodyEndpoint {
+        void handle(Map<String, String> params, OutputStream body)
+                throws HttpError, IOException, InterruptedException;
+    }
+
+    /**
+     * Creates a new GameServer listening on the specified port. The server has to
+     * be started with {@code start()}.
+     *
+     * @param port the port to listen on
+     * @throws IOException if the port can't be bound
+     */
+    public GameServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = newThreadPerTaskExecutor();
+        this.rooms = new ConcurrentHashMap<>();
+        this.players = new ConcurrentHashMap<>();
+        this.expiry = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "GameServer-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/rooms", handler("POST", this::createRoom));
+        server.createContext("/join", handler("POST", this::join));
+        server.createContext("/card", handler("GET", this::card));
+        server.createContext("/card.svg", handler("GET", "image/svg+xml",
+                (params, body) -> WebRenderer.writeSvg(playerCard(params), body)));
+        server.createContext("/card.html", handler("GET", "text/html; charset=utf-8",
+                (params, body) -> WebRenderer.writeHtml(playerCard(params), body)));
+        server.createContext("/calls", handler("GET", this::calls));
+        server.createContext("/call", handler("POST", this::call));
+        server.createContext("/claim", handler("POST", this::claim));
+        server.createContext("/close", handler("POST", this::close));
+    }
+
+    /**
+     * Starts accepting requests, and closing idle rooms.
+     */
+    public void start() {
+        server.start();
+        expiry.scheduleWithFixedDelay(() -> closeIdleRooms(TimeUnit.MILLISECONDS.toNanos(ROOM_TIMEOUT)),
+                EXPIRY_INTERVAL, EXPIRY_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops accepting requests and closes all connections.
+     */
+    public void stop() {
+        server.stop(0);
+        expiry.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Closes all rooms that haven't been used for the specified time.
+     *
+     * @param idleNanos the idle time, in nanoseconds
+     * @return the number of rooms closed
+     */
+    int closeIdleRooms(long idleNanos) {
+        int closed = 0;
+        for (GameRoom room : rooms.values()) {
+            if (room.getIdleNanos() >= idleNanos && closeRoom(room))
+                closed++;
+        }
+        return closed;
+    }
+
+    /**
+     * Removes a room along with its players, so its GameEngine and BingoCards
+     * can be collected.
+     *
+     * @return {@code false} if the room was closed before
+     */
+    private boolean closeRoom(GameRoom room) {
+        if (!rooms.remove(room.getId(), room))
+            return false;
+        room.close();
+        players.values().removeIf(player -> player.room == room);
+        return true;
+    }
+
+    /**
+     * Returns the number of open rooms.
+     *
+     * @return the number of rooms
+     */
+    int getRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * Returns the number of players in all open rooms.
+     *
+     * @return the number of players
+     */
+    int getPlayerCount() {
+        return players.size();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private String createRoom(Map<String, String> params) throws HttpError, IOException {
+        String setName = required(params, "set");
+        if (!BingoSets.getAllNames().contains(setName))
+            throw new HttpError(404, "The set '" + setName + "' was not found.");
+        int size = number(params, "size", 5);
+        if (size < 3)
+            throw new HttpError(400, "Minimum size is 3.");
+        String id = token(6);
+        String caller = token(16);
+        GameRoom room = GameRoom.create(id, caller, setName, size, !"false".equals(params.get("free")));
+        if (room == null)
+            throw new HttpError(409, "The set '" + setName + "' is too small for size " + size + ".");
+        rooms.put(id, room);
+        return "room " + id + "\ncaller " + caller + "\n";
+    }
+
+    private String join(Map<String, String> params) throws HttpError {
+        GameRoom room = room(params);
+        String token = token(16);
+        int card;
+        try {
+            card = room.join();
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(409, "The room is full.");
+        }
+        players.put(token, new Player(room, card));
+        if (room.isClosed()) {
+            // the room was closed while joining, after its players were removed
+            players.remove(token);
+            throw new HttpError(404, "The room was not found.");
+        }
+        return "player " + token + "\n";
+    }
+
+    private String card(Map<String, String> params) throws HttpError {
+        Player player = player(params);
+        return player.room.getCard(player.card) + "\n";
+    }
+
+    private BingoCard playerCard(Map<String, String> params) throws HttpError {
+        Player player = player(params);
+        return player.room.getBingoCard(player.card);
+    }
+
+    private String calls(Map<String, String> params) throws HttpError, InterruptedException {
+        GameRoom room = room(params);
+        int since = number(params, "since", 0);
+        long timeout = Math.min(number(params, "timeout", 30_000), MAX_POLL_TIMEOUT);
+        List<String> calls = room.awaitCalls(since, timeout);
+        StringBuilder body = new StringBuilder();
+        for (String term : calls) {
+            body.append(term).append('\n');
+        }
+        return body.toString();
+    }
+
+    private String call(Map<String, String> params) throws HttpError {
+        GameRoom room = room(params);
+        if (!room.isCaller(params.get("caller")))
+            throw new HttpError(403, "Only the caller of the room can call terms.");
+        String term = params.get("term");
+        String called = room.call(term);
+        if (called == null)
+            throw new HttpError(409, term == null ? "All terms have been called." : "'" + term
+                    + "' isn't part of the set.");
+        return called + "\n";
+    }
+
+    private String claim(Map<String, String> params) throws HttpError {
+        Player player = player(params);
+        if (!player.room.claim(player.card))
+            throw new HttpError(409, "No Bingo yet.");
+        return "Bingo!\n";
+    }
+
+    private String close(Map<String, String> params) throws HttpError {
+        GameRoom room = room(params);
+        if (!room.isCaller(params.get("caller")))
+            throw new HttpError(403, "Only the caller of the room can close it.");
+        closeRoom(room);
+        return "closed\n";
+    }
+
+    private GameRoom room(Map<String, String> params) throws HttpError {
+        GameRoom room = rooms.get(required(params, "room"));
+        if (room == null)
+            throw new HttpError(404, "The room was not found.");
+        return room;
+    }
+
+    private Player player(Map<String, String> params) throws HttpError {
+        Player player = players.get(required(params, "player"));
+        if (player == null)
+            throw new HttpError(404, "The player was not found.");
+        return player;
+    }
+
+    private static String required(Map<String, String> params, String name) throws HttpError {
+        String value = params.get(name);
+        if (value == null || value.isEmpty())
+            throw new HttpError(400, "Missing parameter '" + name + "'.");
+        return value;
+    }
+
+    private static int number(Map<String, String> params, String name, int fallback) throws HttpError {
+        String value = params.get(name);
+        if (value == null)
+            return fallback;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new HttpError(400, "Parameter '" + name + "' must be a number.");
+        }
+    }
+
+    private static String token(int bytes) {
+        byte[] random = new byte[bytes];
+        TOKENS.nextBytes(random);
+        StringBuilder token = new StringBuilder(bytes * 2);
+        for (byte b : random) {
+            token.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return token.toString();
+    }
+
+    /**
+     * Wraps an endpoint into an HttpHandler that checks the method, parses the
+     * query and writes the response.
+     */
+    private static HttpHandler handler(String method, Endpoint endpoint) {
+        return handler(method, PLAIN_TEXT,
+                (params, body) -> body.write(endpoint.handle(params).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Wraps an endpoint writing a response of the specified content type into an
+     * HttpHandler. The response is buffered, so errors can still be answered
+     * with plain text.
+     */
+    private static HttpHandler handler(String method, String contentType, BodyEndpoint endpoint) {
+        return exchange -> {
+            int status = 200;
+            String type = contentType;
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try {
+                if (!method.equals(exchange.getRequestMethod()))
+                    throw new HttpError(405, "Use " + method + ".");
+                endpoint.handle(parseQuery(exchange.getRequestURI().getRawQuery()), body);
+            } catch (HttpError e) {
+                status = e.status;
+                type = PLAIN_TEXT;
+                body = text(e.getMessage() + "\n");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                status = 503;
+                type = PLAIN_TEXT;
+                body = text("The server is shutting down.\n");
+            } catch (RuntimeException e) {
+                status = 500;
+                type = PLAIN_TEXT;
+                body = text("Internal error.\n");
+            }
+            respond(exchange, status, type, body.toByteArray());
+        };
+    }
+
+    private static ByteArrayOutputStream text(String message) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(message.getBytes(StandardCharsets.UTF_8));
+        return body;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] bytes)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null)
+            return params;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            params.putIfAbsent(name, value);
+        }
+        return params;
+    }
+
+    /**
+     * Returns an executor that runs every task on a new virtual thread, or on a
+     * cached platform thread if the JDK doesn't support virtual threads yet.
+     */
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Starts a GameServer on the port given as the first argument, or on port
+     * 8080.
+     */
+    public static void main(String[] args) {
+        try {
+            GameServer server = new GameServer(args.length > 0 ? Integer.parseInt(args[0]) : 8080);
+            server.start();
+            System.out.println("GameServer listening on port " + server.getPort());
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+        }
+    }
+}